@@ -0,0 +1,63 @@
+package com.xraybot.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xraybot.service.InboundListParser;
+import com.xraybot.service.XrayApiService.Client;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ответов панели: потоковый парсер против прежнего разбора через дерево JsonNode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientParsingBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int clients;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private InboundListParser parser;
+    private String inboundList;
+
+    @Setup
+    public void setup() {
+        parser = new InboundListParser(mapper.getFactory());
+        List<Client> data = PanelPayloads.clients(clients, System.currentTimeMillis());
+        inboundList = PanelPayloads.inboundList(data, 8);
+    }
+
+    @Benchmark
+    public void treeInboundList(Blackhole bh) throws IOException {
+        JsonNode root = mapper.readTree(inboundList);
+        for (JsonNode inbound : root.path("obj")) {
+            for (JsonNode node : inbound.path("clientStats")) {
+                bh.consume(new Client(
+                        node.path("email").asText(),
+                        node.path("expiryTime").asLong(0),
+                        node.path("up").asLong(0),
+                        node.path("down").asLong(0),
+                        node.path("enable").asBoolean(true)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void streamingInboundList(Blackhole bh) throws IOException {
+        parser.forEachClientStat(inboundList, bh::consume);
+    }
+
+    @Benchmark
+    public boolean successFlag() {
+        return parser.isSuccess(inboundList);
+    }
+}
@@ -0,0 +1,76 @@
+package com.xraybot.bench;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.NotificationLedger;
+import com.xraybot.service.UserIndex;
+import com.xraybot.service.XrayApiService.Client;
+import com.xraybot.task.ExpiryThresholds;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цикл проверки сроков из NotificationScheduler без сети: пороги, журнал
+ * уведомлений и поиск chatId.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpiryEvaluationBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int clients;
+
+    private List<Client> data;
+    private long nowSeconds;
+    private final ExpiryThresholds thresholds = new ExpiryThresholds(List.of(7, 3, 1, 0));
+    private final NotificationLedger ledger = new NotificationLedger(new XrayProperties());
+    private final UserIndex index = new UserIndex();
+
+    @Setup
+    public void setup() {
+        long nowMillis = System.currentTimeMillis();
+        nowSeconds = nowMillis / 1000;
+        data = PanelPayloads.clients(clients, nowMillis);
+        for (int i = 0; i < data.size(); i += 2) {
+            index.put(data.get(i).email(), 100_000L + i);
+        }
+        // Половине клиентов уже сообщили о ближайшем пороге
+        for (int i = 0; i < data.size(); i += 2) {
+            Client c = data.get(i);
+            int threshold = thresholds.crossedThreshold(c.expiryTime() / 1000 - nowSeconds);
+            if (c.expiryTime() != 0 && threshold != ExpiryThresholds.NO_THRESHOLD) {
+                ledger.markNotified(c.email(), c.expiryTime(), threshold);
+            }
+        }
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole bh) {
+        List<Client> due = new ArrayList<>();
+        for (Client client : data) {
+            if (client.expiryTime() == 0) {
+                continue;
+            }
+            long secondsLeft = client.expiryTime() / 1000 - nowSeconds;
+            int threshold = thresholds.crossedThreshold(secondsLeft);
+            if (threshold != ExpiryThresholds.NO_THRESHOLD && ledger.isDue(client.email(), client.expiryTime(), threshold)) {
+                due.add(client);
+            }
+        }
+        bh.consume(index.lookupAll(due.stream().map(Client::email).toList()));
+    }
+
+    @Benchmark
+    public void renderNotifications(Blackhole bh) {
+        for (Client client : data) {
+            bh.consume(ExpiryThresholds.notificationText(client.email(), client.expiryTime() / 1000 - nowSeconds));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.xraybot.bench;
+
+import com.xraybot.service.XrayApiService.Client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Синтетические ответы 3X-UI с заданным числом клиентов.
+ */
+final class PanelPayloads {
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private PanelPayloads() {
+    }
+
+    static List<Client> clients(int count, long nowMillis) {
+        Random random = new Random(count);
+        List<Client> clients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Четверть бессрочных, остальные — в пределах ±30 дней от текущего момента
+            long expiry = i % 4 == 0 ? 0 : nowMillis + (random.nextInt(60) - 30) * DAY_MILLIS;
+            clients.add(new Client("user" + i, expiry,
+                    random.nextLong(1L << 40), random.nextLong(1L << 40), i % 10 != 0));
+        }
+        return clients;
+    }
+
+    // Ответ /panel/api/inbounds/list: клиенты в clientStats, разложенные по inbounds
+    static String inboundList(List<Client> clients, int inbounds) {
+        StringBuilder sb = new StringBuilder("{\"success\":true,\"msg\":\"\",\"obj\":[");
+        int perInbound = Math.max(1, (clients.size() + inbounds - 1) / inbounds);
+        for (int inbound = 0; inbound * perInbound < clients.size(); inbound++) {
+            if (inbound > 0) sb.append(',');
+            sb.append("{\"id\":").append(inbound + 1).append(",\"up\":0,\"down\":0,\"remark\":\"in")
+                    .append(inbound).append("\",\"enable\":true,\"settings\":\"{\\\"clients\\\":[]}\",\"clientStats\":[");
+            int from = inbound * perInbound;
+            int to = Math.min(clients.size(), from + perInbound);
+            for (int i = from; i < to; i++) {
+                Client c = clients.get(i);
+                if (i > from) sb.append(',');
+                sb.append("{\"id\":").append(i).append(",\"inboundId\":").append(inbound + 1)
+                        .append(",\"enable\":").append(c.enable())
+                        .append(",\"email\":\"").append(c.email())
+                        .append("\",\"up\":").append(c.up()).append(",\"down\":").append(c.down())
+                        .append(",\"expiryTime\":").append(c.expiryTime()).append(",\"total\":0,\"reset\":0}");
+            }
+            sb.append("]}");
+        }
+        return sb.append("]}").toString();
+    }
+}
@@ -0,0 +1,39 @@
+package com.xraybot.bench;
+
+import com.xraybot.bot.BotCommandRegistry;
+import com.xraybot.bot.StatusMessageRenderer;
+import com.xraybot.service.XrayApiService.Client;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение ответов /status и /help.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderingBenchmark {
+
+    private final Client client = new Client("user42", System.currentTimeMillis() + 5L * 24 * 60 * 60 * 1000,
+            123_456_789_012L, 9_876_543_210L, true);
+    private final long nowSeconds = System.currentTimeMillis() / 1000;
+
+    @Benchmark
+    public String status() {
+        return StatusMessageRenderer.renderStatus("user42", client, nowSeconds);
+    }
+
+    @Benchmark
+    public String humanReadableBytes() {
+        return StatusMessageRenderer.humanReadableBytes(client.up());
+    }
+
+    @Benchmark
+    public String helpText() {
+        return BotCommandRegistry.asHelpText();
+    }
+}
@@ -0,0 +1,69 @@
+package com.xraybot.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xraybot.service.UserIndex;
+import com.xraybot.service.UserJournal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Загрузка и сохранение реестра пользователей: разбор снимка с журналом и
+ * свёртка журнала в новый снимок.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserRegistryPersistenceBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int users;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final UserIndex index = new UserIndex();
+    private Path dir;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("user-registry-bench");
+        for (int i = 0; i < users; i++) {
+            index.put("user" + i, 100_000L + i);
+        }
+        UserJournal journal = journal();
+        journal.start();
+        journal.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Map<String, Long> load() throws IOException {
+        return journal().replay();
+    }
+
+    @Benchmark
+    public void appendAndCompact() throws IOException {
+        UserJournal journal = journal();
+        journal.start();
+        journal.append("burst", 1L);
+        journal.close();
+    }
+
+    private UserJournal journal() {
+        return new UserJournal(dir.resolve("user_map.json"), dir.resolve("user_map.journal"), mapper, index::toMap);
+    }
+}
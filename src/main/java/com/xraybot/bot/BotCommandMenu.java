@@ -0,0 +1,114 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.commands.SetMyCommands;
+import org.telegram.telegrambots.meta.api.objects.commands.BotCommand;
+import org.telegram.telegrambots.meta.api.objects.commands.scope.BotCommandScopeChat;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Меню команд в Telegram. Хеш меню (общего и для чатов администраторов)
+ * хранится в файле, и {@code SetMyCommands} вызывается только когда набор
+ * команд изменился — обычный перезапуск после деплоя в Telegram не ходит.
+ */
+@Component
+public class BotCommandMenu {
+
+    private static final Logger log = LoggerFactory.getLogger(BotCommandMenu.class);
+
+    private final NotifyBot notifyBot;
+    private final String botUsername;
+    private final List<Long> adminChatIds;
+    private final Path path;
+
+    public BotCommandMenu(NotifyBot notifyBot, XrayProperties properties) {
+        this.notifyBot = notifyBot;
+        this.botUsername = properties.getBotUsername();
+        this.adminChatIds = List.copyOf(properties.getAdmin().getChatIds());
+        this.path = properties.getStorage().resolve(properties.getStorage().getCommandMenuHash());
+    }
+
+    /**
+     * Отправляет меню, если оно отличается от отправленного в прошлый раз.
+     * Ошибка общего меню пробрасывается, чтобы вызывающий повторил попытку;
+     * меню администратора может не задаться, если он ещё не писал боту, —
+     * тогда хеш не сохраняется и попытка повторится при следующем старте.
+     */
+    public void syncIfChanged() throws TelegramApiException {
+        String hash = hash();
+        if (hash.equals(readStored(path))) {
+            log.debug("Меню команд не изменилось");
+            return;
+        }
+
+        notifyBot.execute(new SetMyCommands(BotCommandRegistry.asTelegramCommandList(), null, null));
+        boolean complete = true;
+        for (Long chatId : adminChatIds) {
+            try {
+                notifyBot.execute(new SetMyCommands(BotCommandRegistry.asAdminTelegramCommandList(),
+                        new BotCommandScopeChat(chatId.toString()), null));
+            } catch (TelegramApiException e) {
+                complete = false;
+                log.warn("Не удалось задать меню команд для чата администратора {}: {}", chatId, e.getMessage());
+            }
+        }
+        log.info("Меню команд обновлено");
+        if (complete) {
+            store(path, hash);
+        }
+    }
+
+    private String hash() {
+        StringBuilder sb = new StringBuilder(botUsername != null ? botUsername : "").append('\n');
+        appendCommands(sb, "default", BotCommandRegistry.asTelegramCommandList());
+        for (Long chatId : adminChatIds) {
+            appendCommands(sb, "chat:" + chatId, BotCommandRegistry.asAdminTelegramCommandList());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void appendCommands(StringBuilder sb, String scope, List<BotCommand> commands) {
+        for (BotCommand command : commands) {
+            sb.append(scope).append('\t').append(command.getCommand())
+                    .append('\t').append(command.getDescription()).append('\n');
+        }
+    }
+
+    private static String readStored(Path path) {
+        try {
+            return Files.exists(path) ? Files.readString(path).strip() : null;
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void store(Path path, String hash) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Files.writeString(tmp, hash);
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить хеш меню команд: {}", e.getMessage());
+        }
+    }
+}
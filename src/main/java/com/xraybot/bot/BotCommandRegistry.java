@@ -3,19 +3,29 @@ package com.xraybot.bot;
 import org.telegram.telegrambots.meta.api.objects.commands.BotCommand;
 
 import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public enum BotCommandRegistry {
     START("/start", "Регистрация для получения уведомлений"),
     STATUS("/status", "Показать текущий статус подключения"),
-    HELP("/help", "Список всех команд");
+    USAGE("/usage", "Трафик за час, сутки и месяц"),
+    HELP("/help", "Список всех команд"),
+    REPORT("/report", "Отчёт по всем клиентам", true);
 
     private final String command;
     private final String description;
+    // Видна и доступна только чатам из xray.admin.chat-ids
+    private final boolean adminOnly;
 
     BotCommandRegistry(String command, String description) {
+        this(command, description, false);
+    }
+
+    BotCommandRegistry(String command, String description, boolean adminOnly) {
         this.command = command;
         this.description = description;
+        this.adminOnly = adminOnly;
     }
 
     public String getCommand() {
@@ -26,20 +36,50 @@ public enum BotCommandRegistry {
         return description;
     }
 
+    public boolean isAdminOnly() {
+        return adminOnly;
+    }
+
+    // Меню для всех пользователей — без служебных команд
     public static List<BotCommand> asTelegramCommandList() {
+        return publicCommands()
+                .map(c -> new BotCommand(c.getCommand(), c.getDescription()))
+                .toList();
+    }
+
+    // Меню для чатов администраторов — все команды
+    public static List<BotCommand> asAdminTelegramCommandList() {
         return Stream.of(values())
                 .map(c -> new BotCommand(c.getCommand(), c.getDescription()))
                 .toList();
     }
 
+    // Текст справки не меняется — собирается один раз
     public static String asHelpText() {
-        StringBuilder sb = new StringBuilder("📋 *Доступные команды:*\n");
-        for (var cmd : values()) {
-            sb.append(cmd.getCommand())
+        return HelpText.VALUE;
+    }
+
+    // «/start, /status, /usage и /help»
+    public static String asCommandList() {
+        List<String> all = publicCommands().map(BotCommandRegistry::getCommand).toList();
+        String head = all.stream().limit(all.size() - 1L).collect(Collectors.joining(", "));
+        return all.size() == 1 ? all.get(0) : head + " и " + all.get(all.size() - 1);
+    }
+
+    private static Stream<BotCommandRegistry> publicCommands() {
+        return Stream.of(values()).filter(c -> !c.isAdminOnly());
+    }
+
+    private static final class HelpText {
+        private static final String VALUE = build();
+
+        private static String build() {
+            StringBuilder sb = new StringBuilder("📋 *Доступные команды:*\n");
+            publicCommands().forEach(cmd -> sb.append(cmd.getCommand())
                     .append(" — ")
                     .append(cmd.getDescription())
-                    .append("\n");
+                    .append("\n"));
+            return sb.toString();
         }
-        return sb.toString();
     }
 }
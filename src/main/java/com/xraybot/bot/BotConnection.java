@@ -0,0 +1,13 @@
+package com.xraybot.bot;
+
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+/**
+ * Подключение бота к Telegram: сессия long polling или регистрация webhook.
+ * Вызывается {@link BotStartup} в фоне и повторяется, пока не удастся.
+ */
+@FunctionalInterface
+public interface BotConnection {
+
+    void connect() throws TelegramApiException;
+}
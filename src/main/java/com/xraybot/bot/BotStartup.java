@@ -0,0 +1,109 @@
+package com.xraybot.bot;
+
+import com.xraybot.service.UserRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.time.Duration;
+
+/**
+ * Сетевая часть старта бота: подключение к Telegram и меню команд. Идёт в
+ * фоновом потоке после готовности приложения и повторяется с нарастающей
+ * паузой, если Telegram недоступен, — контекст поднимается без сети.
+ * <p>
+ * Пока бот не подключён или пользователи ещё не загружены, индикатор
+ * здоровья {@code botStartup} отвечает DOWN; он входит в группу readiness,
+ * поэтому оркестратор не шлёт трафик раньше времени. Если пользователи
+ * не загрузились, индикатор остаётся DOWN до перезапуска.
+ */
+@Component
+public class BotStartup implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(BotStartup.class);
+    private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private final BotConnection botConnection;
+    private final BotCommandMenu botCommandMenu;
+    private final UserRegistry userRegistry;
+
+    private volatile boolean connected;
+    private volatile String lastError;
+    private Thread worker;
+
+    public BotStartup(BotConnection botConnection, BotCommandMenu botCommandMenu, UserRegistry userRegistry) {
+        this.botConnection = botConnection;
+        this.botCommandMenu = botCommandMenu;
+        this.userRegistry = userRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        worker = Thread.ofVirtual().name("bot-startup").start(this::run);
+    }
+
+    private void run() {
+        long started = System.nanoTime();
+        try {
+            retry("подключение к Telegram", botConnection::connect);
+            connected = true;
+            log.info("Бот подключён к Telegram за {} мс", (System.nanoTime() - started) / 1_000_000);
+            retry("обновление меню команд", botCommandMenu::syncIfChanged);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void retry(String step, Step action) throws InterruptedException {
+        Duration backoff = INITIAL_BACKOFF;
+        while (true) {
+            try {
+                action.run();
+                lastError = null;
+                return;
+            } catch (TelegramApiException | RuntimeException e) {
+                lastError = step + ": " + e.getMessage();
+                log.warn("Не удалось выполнить {}, повтор через {} с: {}", step, backoff.toSeconds(), e.getMessage());
+            }
+            Thread.sleep(backoff);
+            backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+        }
+    }
+
+    public boolean isReady() {
+        return connected && userRegistry.isLoaded() && userRegistry.loadError() == null;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = isReady() ? Health.up() : Health.down();
+        String loadError = userRegistry.loadError();
+        builder.withDetail("telegram", connected ? "подключён" : "подключается")
+                .withDetail("users", loadError != null ? "ошибка загрузки: " + loadError
+                        : userRegistry.isLoaded() ? "загружены" : "загружаются");
+        String error = lastError;
+        if (error != null) {
+            builder.withDetail("lastError", error);
+        }
+        return builder.build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run() throws TelegramApiException;
+    }
+}
@@ -0,0 +1,14 @@
+package com.xraybot.bot;
+
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+
+/**
+ * Обработчик нажатий на inline-кнопки. {@link CommandRouter} выбирает его по
+ * префиксу в {@code callback_data} до первого двоеточия.
+ */
+public interface CallbackHandler {
+
+    String prefix();
+
+    void handle(CallbackQuery query);
+}
@@ -0,0 +1,121 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Обрабатывает обновления разных чатов параллельно на виртуальных потоках,
+ * сохраняя порядок внутри одного чата. Общее число ожидающих обновлений
+ * ограничено; сверх лимита {@link #submit} возвращает {@code false}.
+ */
+@Component
+public class ChatUpdateExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatUpdateExecutor.class);
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("update-", 0).factory());
+    private final Map<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final int capacity;
+
+    public ChatUpdateExecutor(XrayProperties properties) {
+        this.capacity = properties.getUpdates().getQueueCapacity();
+    }
+
+    public boolean submit(long chatId, Runnable task) {
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            return false;
+        }
+
+        // Очередь чата создаётся и удаляется под блокировкой ConcurrentHashMap,
+        // поэтому задача не может попасть в уже выброшенную очередь. Под блокировкой
+        // только решаем, нужен ли обработчик; запускаем его уже после compute
+        boolean[] start = new boolean[1];
+        chats.compute(chatId, (id, queue) -> {
+            ChatQueue target = queue != null ? queue : new ChatQueue();
+            target.tasks.add(task);
+            if (!target.running) {
+                target.running = true;
+                start[0] = true;
+            }
+            return target;
+        });
+        if (!start[0]) {
+            return true;
+        }
+        try {
+            executor.execute(() -> drain(chatId));
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Исполнитель остановлен: обработчика у очереди не будет, снимаем её целиком.
+            // Задачи, успевшие встать за этой, тоже не выполнятся
+            ChatQueue dropped = chats.remove(chatId);
+            int count = dropped != null ? dropped.tasks.size() : 1;
+            pending.addAndGet(-count);
+            log.warn("Обновления чата {} отброшены при остановке: {}", chatId, count);
+            return false;
+        }
+    }
+
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    private void drain(long chatId) {
+        while (true) {
+            Runnable task = nextTask(chatId);
+            if (task == null) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Ошибка при обработке обновления чата {}", chatId, e);
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    private Runnable nextTask(long chatId) {
+        Runnable[] next = new Runnable[1];
+        chats.computeIfPresent(chatId, (id, queue) -> {
+            next[0] = queue.tasks.poll();
+            if (next[0] == null) {
+                // Чат опустел — убираем очередь, следующий submit запустит новый обработчик
+                return null;
+            }
+            return queue;
+        });
+        return next[0];
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Не все обновления успели обработаться до остановки");
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class ChatQueue {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+    }
+}
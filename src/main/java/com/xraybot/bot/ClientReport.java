@@ -0,0 +1,205 @@
+package com.xraybot.bot;
+
+import com.xraybot.service.XrayApiService.Client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Отчёт по клиентам, разбитый на страницы под лимит длины сообщения Telegram.
+ * Хранит только ссылки на клиентов снимка, разложенные по группам, и позиции
+ * начала страниц; текст страницы собирается при показе в один переиспользуемый
+ * буфер, поэтому отчёт на десятки тысяч клиентов не держит в памяти готовый текст.
+ */
+final class ClientReport {
+
+    // Telegram принимает до 4096 символов; запас — на случай длинного email в последней строке
+    static final int PAGE_LIMIT = 3800;
+
+    private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+    private static final long END = -1;
+
+    enum Group {
+        EXPIRING("⏳ Скоро истекают"),
+        EXPIRED("⛔ Истекли"),
+        DISABLED("🔴 Отключены"),
+        TOP_TRAFFIC("📶 Больше всего трафика");
+
+        private final String title;
+
+        Group(String title) {
+            this.title = title;
+        }
+    }
+
+    private static final Group[] GROUPS = Group.values();
+
+    private final Client[][] sections;
+    private final String summary;
+    private final long nowMillis;
+    private final long[] pageStarts;
+    private final StringBuilder buffer = new StringBuilder(PAGE_LIMIT + 256);
+
+    private ClientReport(Client[][] sections, String summary, long nowMillis) {
+        this.sections = sections;
+        this.summary = summary;
+        this.nowMillis = nowMillis;
+        this.pageStarts = paginate();
+    }
+
+    /**
+     * Раскладывает клиентов по группам: истёкшие, отключённые и те, чей срок
+     * наступит в пределах {@code expiringWindow}. Отдельно — {@code topTraffic}
+     * клиентов с наибольшим трафиком; для них не сортируется весь список.
+     */
+    static ClientReport build(Collection<Client> clients, long nowMillis, Duration expiringWindow,
+                              int topTraffic, String note) {
+        List<Client> expiring = new ArrayList<>();
+        List<Client> expired = new ArrayList<>();
+        List<Client> disabled = new ArrayList<>();
+        Comparator<Client> byTraffic = Comparator.comparingLong(ClientReport::traffic);
+        PriorityQueue<Client> top = new PriorityQueue<>(topTraffic + 1, byTraffic);
+        long horizon = nowMillis + expiringWindow.toMillis();
+
+        for (Client client : clients) {
+            long expiry = client.expiryTime();
+            if (expiry > 0 && expiry <= nowMillis) {
+                expired.add(client);
+            } else if (!client.enable()) {
+                disabled.add(client);
+            } else if (expiry > 0 && expiry <= horizon) {
+                expiring.add(client);
+            }
+            if (topTraffic > 0 && traffic(client) > 0) {
+                top.add(client);
+                if (top.size() > topTraffic) {
+                    top.poll();
+                }
+            }
+        }
+
+        Client[][] sections = new Client[GROUPS.length][];
+        sections[Group.EXPIRING.ordinal()] = sorted(expiring, Comparator.comparingLong(Client::expiryTime));
+        sections[Group.EXPIRED.ordinal()] = sorted(expired, Comparator.comparingLong(Client::expiryTime).reversed());
+        sections[Group.DISABLED.ordinal()] = sorted(disabled, Comparator.comparing(Client::email));
+        sections[Group.TOP_TRAFFIC.ordinal()] = sorted(new ArrayList<>(top), byTraffic.reversed());
+
+        StringBuilder summary = new StringBuilder(128)
+                .append("📋 Клиентов: ").append(clients.size())
+                .append(" · истекают: ").append(expiring.size())
+                .append(" · истекли: ").append(expired.size())
+                .append(" · отключены: ").append(disabled.size())
+                .append('\n');
+        if (note != null) {
+            summary.append(note);
+        }
+        return new ClientReport(sections, summary.toString(), nowMillis);
+    }
+
+    int pages() {
+        return pageStarts.length;
+    }
+
+    // Один буфер на отчёт: страницы одного отчёта листает один чат, но вызовы могут прийти из разных потоков
+    synchronized String page(int index) {
+        fill(buffer, pageStarts[index]);
+        return buffer.toString();
+    }
+
+    private long[] paginate() {
+        List<Long> starts = new ArrayList<>();
+        long position = 0;
+        synchronized (this) {
+            do {
+                starts.add(position);
+                position = fill(buffer, position);
+            } while (position != END);
+        }
+        return starts.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Пишет в {@code sb} страницу, начиная с позиции (номер группы в старших
+     * 32 битах, номер строки — в младших), пока она помещается в лимит.
+     * Возвращает позицию следующей страницы или {@link #END}. Одна и та же
+     * процедура используется и для разбивки, и для показа, поэтому границы
+     * страниц всегда совпадают с текстом.
+     */
+    private long fill(StringBuilder sb, long position) {
+        int section = (int) (position >>> 32);
+        int row = (int) position;
+        sb.setLength(0);
+        sb.append(summary);
+        boolean empty = true;
+
+        for (; section < sections.length; section++, row = 0) {
+            Client[] rows = sections[section];
+            if (row >= rows.length) {
+                continue;
+            }
+            int headerMark = sb.length();
+            appendHeader(sb, GROUPS[section], rows.length, row > 0);
+            int firstRow = row;
+            for (; row < rows.length; row++) {
+                // Заголовок без единой строки под ним переносится на следующую страницу вместе с ней
+                int mark = row == firstRow ? headerMark : sb.length();
+                appendRow(sb, GROUPS[section], rows[row]);
+                if (sb.length() > PAGE_LIMIT && !empty) {
+                    sb.setLength(mark);
+                    return ((long) section << 32) | row;
+                }
+                empty = false;
+            }
+        }
+        if (empty) {
+            sb.append("\nНи один клиент не попал в отчёт.\n");
+        }
+        return END;
+    }
+
+    private static void appendHeader(StringBuilder sb, Group group, int count, boolean continued) {
+        sb.append('\n').append(group.title);
+        if (continued) {
+            sb.append(" (продолжение)");
+        } else {
+            sb.append(" (").append(count).append(')');
+        }
+        sb.append(":\n");
+    }
+
+    private void appendRow(StringBuilder sb, Group group, Client client) {
+        sb.append("• ").append(client.email());
+        switch (group) {
+            case EXPIRING -> {
+                long days = (client.expiryTime() - nowMillis) / DAY_MILLIS;
+                sb.append(" — ");
+                if (days == 0) {
+                    sb.append("меньше суток");
+                } else {
+                    sb.append("через ").append(days).append(" дн.");
+                }
+            }
+            case EXPIRED -> sb.append(" — ").append((nowMillis - client.expiryTime()) / DAY_MILLIS).append(" дн. назад");
+            case TOP_TRAFFIC -> StatusMessageRenderer.appendHumanReadableBytes(sb.append(" — "), traffic(client));
+            case DISABLED -> {
+                // достаточно имени
+            }
+        }
+        sb.append('\n');
+    }
+
+    private static Client[] sorted(List<Client> clients, Comparator<Client> order) {
+        Client[] array = clients.toArray(new Client[0]);
+        Arrays.sort(array, order);
+        return array;
+    }
+
+    private static long traffic(Client client) {
+        return client.up() + client.down();
+    }
+}
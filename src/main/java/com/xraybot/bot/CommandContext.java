@@ -0,0 +1,37 @@
+package com.xraybot.bot;
+
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+/**
+ * Разобранная команда: чат, username отправителя и аргументы после имени команды
+ * (пустая строка, если их нет). Ответы уходят через интерактивную очередь отправки.
+ */
+public record CommandContext(long chatId, String username, String args, OutboundDispatcher dispatcher) {
+
+    public boolean hasUsername() {
+        return username != null && !username.isEmpty();
+    }
+
+    public void reply(String text) {
+        send(text, null, null);
+    }
+
+    public void replyMarkdown(String text) {
+        send(text, "Markdown", null);
+    }
+
+    public void reply(String text, InlineKeyboardMarkup keyboard) {
+        send(text, null, keyboard);
+    }
+
+    private void send(String text, String parseMode, InlineKeyboardMarkup keyboard) {
+        SendMessage message = new SendMessage();
+        message.setChatId(Long.toString(chatId));
+        message.setText(text);
+        message.setParseMode(parseMode);
+        message.setReplyMarkup(keyboard);
+
+        dispatcher.submit(message, chatId, OutboundDispatcher.Lane.INTERACTIVE);
+    }
+}
@@ -0,0 +1,12 @@
+package com.xraybot.bot;
+
+/**
+ * Обработчик одной команды бота. Реализации — Spring-бины; {@link CommandRouter}
+ * собирает их в таблицу по {@link #command()}.
+ */
+public interface CommandHandler {
+
+    BotCommandRegistry command();
+
+    void handle(CommandContext context);
+}
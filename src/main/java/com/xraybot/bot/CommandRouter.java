@@ -0,0 +1,146 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таблица команд: разбирает {@code /cmd@bot аргументы}, находит обработчик
+ * одним поиском в хеш-таблице и замеряет время его работы. Таблица и таймеры
+ * строятся один раз при старте, поэтому новые команды не удлиняют разбор.
+ * Служебные команды для чатов не из {@code xray.admin.chat-ids} выглядят как
+ * неизвестные. Нажатия inline-кнопок уходят обработчику по префиксу данных.
+ */
+@Component
+public class CommandRouter {
+
+    static final String UNKNOWN_COMMAND_REPLY = "Я понимаю только команды " + BotCommandRegistry.asCommandList() + ".";
+
+    private final Map<String, Route> routes = new HashMap<>();
+    private final Map<String, CallbackRoute> callbackRoutes = new HashMap<>();
+    private final Set<Long> adminChats;
+    private final String botUsername;
+    private final OutboundDispatcher outboundDispatcher;
+    private final Timer unknownTimer;
+
+    public CommandRouter(List<CommandHandler> handlers,
+                         List<CallbackHandler> callbackHandlers,
+                         XrayProperties properties,
+                         OutboundDispatcher outboundDispatcher,
+                         MeterRegistry meterRegistry) {
+        this.botUsername = properties.getBotUsername();
+        this.adminChats = Set.copyOf(properties.getAdmin().getChatIds());
+        this.outboundDispatcher = outboundDispatcher;
+        this.unknownTimer = meterRegistry.timer("xray.bot.updates", "command", "other");
+
+        Map<BotCommandRegistry, CommandHandler> byCommand = new EnumMap<>(BotCommandRegistry.class);
+        for (CommandHandler handler : handlers) {
+            CommandHandler previous = byCommand.put(handler.command(), handler);
+            if (previous != null) {
+                throw new IllegalStateException("Два обработчика для команды " + handler.command().getCommand());
+            }
+        }
+        for (BotCommandRegistry command : BotCommandRegistry.values()) {
+            CommandHandler handler = byCommand.get(command);
+            if (handler == null) {
+                throw new IllegalStateException("Нет обработчика для команды " + command.getCommand());
+            }
+            Timer timer = meterRegistry.timer("xray.bot.updates", "command", command.getCommand());
+            routes.put(command.getCommand(), new Route(command, handler, timer));
+        }
+        for (CallbackHandler handler : callbackHandlers) {
+            Timer timer = meterRegistry.timer("xray.bot.updates", "command", "callback:" + handler.prefix());
+            if (callbackRoutes.put(handler.prefix(), new CallbackRoute(handler, timer)) != null) {
+                throw new IllegalStateException("Два обработчика кнопок с префиксом " + handler.prefix());
+            }
+        }
+    }
+
+    public void route(Message message) {
+        if (!message.hasText()) {
+            return;
+        }
+        String text = message.getText().strip();
+        long chatId = message.getChatId();
+        String username = message.getFrom() != null ? message.getFrom().getUserName() : null;
+
+        Route route = null;
+        String args = "";
+        if (text.startsWith("/")) {
+            int space = indexOfWhitespace(text);
+            String token = space < 0 ? text : text.substring(0, space);
+            args = space < 0 ? "" : text.substring(space + 1).strip();
+
+            int at = token.indexOf('@');
+            if (at >= 0) {
+                // В группах команда может быть адресована другому боту — такие не трогаем
+                if (!token.substring(at + 1).equalsIgnoreCase(botUsername)) {
+                    return;
+                }
+                token = token.substring(0, at);
+            }
+            route = routes.get(token.toLowerCase(Locale.ROOT));
+            if (route != null && route.command().isAdminOnly() && !adminChats.contains(chatId)) {
+                route = null;
+            }
+        }
+
+        if (route == null) {
+            replyUnknown(chatId);
+            return;
+        }
+        CommandContext context = new CommandContext(chatId, username, args, outboundDispatcher);
+        CommandHandler handler = route.handler();
+        route.timer().record(() -> handler.handle(context));
+    }
+
+    // Неизвестный ввод — самый частый в группах; ответ уходит без контекста команды и лямбды
+    private void replyUnknown(long chatId) {
+        long started = System.nanoTime();
+        outboundDispatcher.submit(new SendMessage(Long.toString(chatId), UNKNOWN_COMMAND_REPLY),
+                chatId, OutboundDispatcher.Lane.INTERACTIVE);
+        unknownTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    public void routeCallback(CallbackQuery query) {
+        String data = query.getData();
+        int colon = data != null ? data.indexOf(':') : -1;
+        CallbackRoute route = callbackRoutes.get(colon < 0 ? data : data.substring(0, colon));
+        if (route == null) {
+            // Кнопка от старой версии бота — просто гасим индикатор загрузки
+            long chatId = query.getMessage() != null ? query.getMessage().getChatId() : query.getFrom().getId();
+            outboundDispatcher.submit(new AnswerCallbackQuery(query.getId()), chatId, OutboundDispatcher.Lane.INTERACTIVE);
+            return;
+        }
+        CallbackHandler handler = route.handler();
+        route.timer().record(() -> handler.handle(query));
+    }
+
+    private static int indexOfWhitespace(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private record Route(BotCommandRegistry command, CommandHandler handler, Timer timer) {
+    }
+
+    private record CallbackRoute(CallbackHandler handler, Timer timer) {
+    }
+}
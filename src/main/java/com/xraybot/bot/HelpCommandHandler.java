@@ -0,0 +1,17 @@
+package com.xraybot.bot;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class HelpCommandHandler implements CommandHandler {
+
+    @Override
+    public BotCommandRegistry command() {
+        return BotCommandRegistry.HELP;
+    }
+
+    @Override
+    public void handle(CommandContext context) {
+        context.reply(BotCommandRegistry.asHelpText());
+    }
+}
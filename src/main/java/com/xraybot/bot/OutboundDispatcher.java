@@ -0,0 +1,367 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Единая очередь исходящих запросов к Telegram. Соблюдает общий лимит Bot API
+ * (token bucket), интервал между сообщениями в один чат и {@code retry_after}
+ * из ответов 429. Интерактивные ответы обгоняют массовые уведомления.
+ * <p>
+ * Запросы выполняют несколько потоков-отправителей одновременно, но в один
+ * чат в каждый момент уходит не больше одного запроса — порядок внутри чата
+ * сохраняется. Чаты, которым ещё рано писать, лежат в куче по времени
+ * готовности, а готовые — в очередях по полосам, поэтому выбор следующего
+ * запроса не просматривает всю очередь.
+ */
+@Component
+public class OutboundDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundDispatcher.class);
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final int PACING_CLEANUP_THRESHOLD = 10_000;
+
+    public enum Lane {
+        INTERACTIVE,
+        BULK
+    }
+
+    private final AbsSender sender;
+    private final long tokenIntervalNanos;
+    private final long perChatIntervalNanos;
+    private final double bucketCapacity;
+    private final int senderCount;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    // Всё ниже до счётчиков меняется только под lock
+    private final Map<Long, ChatQueue> chats = new HashMap<>();
+    private final Deque<ChatQueue> readyInteractive = new ArrayDeque<>();
+    private final Deque<ChatQueue> readyBulk = new ArrayDeque<>();
+    private final PriorityQueue<ChatQueue> delayed = new PriorityQueue<>(Comparator.comparingLong(chat -> chat.readyAt));
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil = System.nanoTime();
+
+    private final AtomicInteger interactiveDepth = new AtomicInteger();
+    private final AtomicInteger bulkDepth = new AtomicInteger();
+    private final MeterRegistry meterRegistry;
+    private final Counter throttled;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public OutboundDispatcher(@Lazy AbsSender sender, XrayProperties properties, MeterRegistry meterRegistry) {
+        XrayProperties.Telegram telegram = properties.getTelegram();
+        this.sender = sender;
+        this.meterRegistry = meterRegistry;
+        this.throttled = meterRegistry.counter("xray.telegram.throttled");
+        this.tokenIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, telegram.getMessagesPerSecond());
+        this.perChatIntervalNanos = telegram.getPerChatInterval().toNanos();
+        this.bucketCapacity = Math.max(1, telegram.getMessagesPerSecond());
+        this.senderCount = Math.max(1, telegram.getSenders());
+        this.tokens = bucketCapacity;
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Lane lane : Lane.values()) {
+            Gauge.builder("xray.telegram.queue.depth", () -> depth(lane).get())
+                    .tag("lane", lane.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        for (int i = 0; i < senderCount; i++) {
+            workers.add(Thread.ofPlatform().name("telegram-outbound-" + i).daemon().start(this::run));
+        }
+    }
+
+    public <T extends Serializable> CompletableFuture<T> submit(BotApiMethod<T> method, long chatId, Lane lane) {
+        Task<T> task = new Task<>(method, chatId, lane, new CompletableFuture<>(), System.nanoTime());
+        lock.lock();
+        try {
+            ChatQueue chat = chats.computeIfAbsent(chatId, id -> new ChatQueue());
+            chat.lane(lane).addLast(task);
+            depth(lane).incrementAndGet();
+            schedule(chat, System.nanoTime());
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        return task.result();
+    }
+
+    public int queueDepth(Lane lane) {
+        return depth(lane).get();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Task<?> task = take();
+                if (task != null) {
+                    deliver(task);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Сбой потока отправки сообщений", e);
+            }
+        }
+    }
+
+    // Ждёт, пока найдётся готовый чат и токен; null — только при остановке
+    private Task<?> take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                if (pausedUntil - now > 0) {
+                    available.awaitNanos(Math.min(pausedUntil - now, IDLE_WAIT_NANOS));
+                    continue;
+                }
+                promoteDelayed(now);
+                if (readyInteractive.isEmpty() && readyBulk.isEmpty()) {
+                    ChatQueue next = delayed.peek();
+                    long wait = next != null ? Math.min(next.readyAt - now, IDLE_WAIT_NANOS) : IDLE_WAIT_NANOS;
+                    available.awaitNanos(Math.max(1, wait));
+                    continue;
+                }
+                long tokenWait = refillTokens(now);
+                if (tokenWait > 0) {
+                    available.awaitNanos(tokenWait);
+                    continue;
+                }
+                Task<?> task = poll(readyInteractive, now);
+                if (task == null) {
+                    task = poll(readyBulk, now);
+                }
+                if (task != null) {
+                    tokens -= 1;
+                    depth(task.lane()).decrementAndGet();
+                    return task;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ставит чат туда, где его найдёт отправитель: в кучу ожидания, если ему
+     * ещё рано писать, иначе в очередь готовых своей полосы. Чат может лишний
+     * раз оказаться в обеих очередях готовых — такие записи отбрасываются в
+     * {@link #poll}.
+     */
+    private void schedule(ChatQueue chat, long now) {
+        if (chat.inFlight || chat.isEmpty()) {
+            return;
+        }
+        if (chat.readyAt - now > 0) {
+            if (!chat.delayed) {
+                chat.delayed = true;
+                delayed.add(chat);
+            }
+            return;
+        }
+        if (!chat.interactive.isEmpty()) {
+            if (!chat.inInteractive) {
+                chat.inInteractive = true;
+                readyInteractive.addLast(chat);
+            }
+        } else if (!chat.inBulk) {
+            chat.inBulk = true;
+            readyBulk.addLast(chat);
+        }
+    }
+
+    private void promoteDelayed(long now) {
+        while (!delayed.isEmpty() && delayed.peek().readyAt - now <= 0) {
+            ChatQueue chat = delayed.poll();
+            chat.delayed = false;
+            schedule(chat, now);
+        }
+    }
+
+    // Следующий запрос первого готового чата; интерактивный обгоняет массовый и внутри чата
+    private Task<?> poll(Deque<ChatQueue> ready, long now) {
+        ChatQueue chat;
+        while ((chat = ready.pollFirst()) != null) {
+            if (ready == readyInteractive) {
+                chat.inInteractive = false;
+            } else {
+                chat.inBulk = false;
+            }
+            if (chat.inFlight || chat.isEmpty() || chat.readyAt - now > 0) {
+                // Устаревшая запись: чат уже занят, пуст или снова ждёт своего интервала
+                continue;
+            }
+            chat.inFlight = true;
+            return chat.interactive.isEmpty() ? chat.bulk.pollFirst() : chat.interactive.pollFirst();
+        }
+        return null;
+    }
+
+    // Пополняет token bucket; возвращает, сколько ждать до следующего токена
+    private long refillTokens(long now) {
+        tokens = Math.min(bucketCapacity, tokens + (double) (now - lastRefill) / tokenIntervalNanos);
+        lastRefill = now;
+        return tokens >= 1 ? 0 : Math.max(1, (long) ((1 - tokens) * tokenIntervalNanos));
+    }
+
+    private <T extends Serializable> void deliver(Task<T> task) {
+        long started = System.nanoTime();
+        try {
+            T response = sender.execute(task.method());
+            release(task, System.nanoTime() + perChatIntervalNanos, false);
+            record(task, started, "success");
+            task.result().complete(response);
+        } catch (TelegramApiRequestException e) {
+            Integer retryAfter = e.getParameters() != null ? e.getParameters().getRetryAfter() : null;
+            if (e.getErrorCode() != null && e.getErrorCode() == 429 && retryAfter != null) {
+                // Telegram просит подождать: ставим всю отправку на паузу и возвращаем задачу в начало очереди чата
+                throttled.increment();
+                release(task, System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfter), true);
+                log.warn("Telegram ответил 429, пауза {} с", retryAfter);
+            } else {
+                release(task, System.nanoTime() + perChatIntervalNanos, false);
+                fail(task, started, e);
+            }
+        } catch (Exception e) {
+            release(task, System.nanoTime() + perChatIntervalNanos, false);
+            fail(task, started, e);
+        }
+    }
+
+    // Запрос в чат завершён: чат снова можно выбирать после readyAt
+    private void release(Task<?> task, long readyAt, boolean retry) {
+        lock.lock();
+        try {
+            ChatQueue chat = chats.get(task.chatId());
+            chat.inFlight = false;
+            chat.readyAt = readyAt;
+            if (retry) {
+                pausedUntil = readyAt;
+                chat.lane(task.lane()).addFirst(task);
+                depth(task.lane()).incrementAndGet();
+            }
+            schedule(chat, System.nanoTime());
+            cleanupPacing();
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fail(Task<?> task, long started, Exception e) {
+        record(task, started, "error");
+        log.warn("Не удалось отправить сообщение в чат {}: {}", task.chatId(), e.getMessage());
+        task.result().completeExceptionally(e);
+    }
+
+    // Время вызова Bot API и полное время от постановки в очередь до ответа
+    private void record(Task<?> task, long started, String outcome) {
+        long now = System.nanoTime();
+        String method = task.method().getMethod();
+        Timer.builder("xray.telegram.execute")
+                .tags("method", method, "outcome", outcome)
+                .register(meterRegistry)
+                .record(now - started, TimeUnit.NANOSECONDS);
+        Timer.builder("xray.telegram.send.latency")
+                .tags("lane", task.lane().name().toLowerCase(), "outcome", outcome)
+                .register(meterRegistry)
+                .record(now - task.enqueuedAt(), TimeUnit.NANOSECONDS);
+    }
+
+    // Пустые чаты, интервал которых истёк, больше ничего не ограничивают
+    private void cleanupPacing() {
+        if (chats.size() > PACING_CLEANUP_THRESHOLD) {
+            long now = System.nanoTime();
+            chats.values().removeIf(chat -> chat.isEmpty() && !chat.inFlight && !chat.delayed
+                    && !chat.inInteractive && !chat.inBulk && chat.readyAt - now <= 0);
+        }
+    }
+
+    private AtomicInteger depth(Lane lane) {
+        return lane == Lane.INTERACTIVE ? interactiveDepth : bulkDepth;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        List<Task<?>> cancelled = new ArrayList<>();
+        lock.lock();
+        try {
+            for (ChatQueue chat : chats.values()) {
+                cancelled.addAll(chat.interactive);
+                cancelled.addAll(chat.bulk);
+                chat.interactive.clear();
+                chat.bulk.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Отмена вызывает обработчики завершения — не под замком
+        cancelled.forEach(task -> task.result().cancel(false));
+    }
+
+    // Очереди одного чата и его место в планировании; поля меняются только под lock
+    private static final class ChatQueue {
+        final Deque<Task<?>> interactive = new ArrayDeque<>();
+        final Deque<Task<?>> bulk = new ArrayDeque<>();
+        long readyAt = System.nanoTime();
+        boolean inFlight;
+        boolean delayed;
+        boolean inInteractive;
+        boolean inBulk;
+
+        Deque<Task<?>> lane(Lane lane) {
+            return lane == Lane.INTERACTIVE ? interactive : bulk;
+        }
+
+        boolean isEmpty() {
+            return interactive.isEmpty() && bulk.isEmpty();
+        }
+    }
+
+    private record Task<T extends Serializable>(BotApiMethod<T> method,
+                                                long chatId,
+                                                Lane lane,
+                                                CompletableFuture<T> result,
+                                                long enqueuedAt) {
+    }
+}
@@ -0,0 +1,160 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.ClientSnapshotCache;
+import com.xraybot.service.PanelUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.MaybeInaccessibleMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code /report} для администраторов: сводка по всем клиентам снимка,
+ * по страницам с кнопками листания. Кнопки ссылаются на отчёт, сохранённый
+ * в {@link ReportCursors}, поэтому листание не обращается к панелям.
+ */
+@Component
+public class ReportCommandHandler implements CommandHandler, CallbackHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportCommandHandler.class);
+    private static final String PREFIX = "report";
+    private static final String CURRENT_PAGE = "-";
+    private static final int TOP_TRAFFIC = 20;
+    private static final int MAX_REPORTS = 32;
+
+    private final ClientSnapshotCache clientSnapshotCache;
+    private final XrayProperties.Admin admin;
+    private final OutboundDispatcher outboundDispatcher;
+    private final Duration ttl;
+    private final Duration expiringWindow;
+    private final ReportCursors cursors;
+
+    public ReportCommandHandler(ClientSnapshotCache clientSnapshotCache,
+                                XrayProperties properties,
+                                OutboundDispatcher outboundDispatcher) {
+        this.clientSnapshotCache = clientSnapshotCache;
+        this.admin = properties.getAdmin();
+        this.outboundDispatcher = outboundDispatcher;
+        this.ttl = properties.getCache().getTtl();
+        // «Скоро истекают» — в пределах самого раннего предупреждения
+        int days = properties.getNotifications().getThresholds().isEmpty()
+                ? 7 : Collections.max(properties.getNotifications().getThresholds());
+        this.expiringWindow = Duration.ofDays(days);
+        this.cursors = new ReportCursors(admin.getReportTtl(), MAX_REPORTS);
+    }
+
+    @Override
+    public BotCommandRegistry command() {
+        return BotCommandRegistry.REPORT;
+    }
+
+    @Override
+    public String prefix() {
+        return PREFIX;
+    }
+
+    @Override
+    public void handle(CommandContext context) {
+        try {
+            ClientSnapshotCache.Snapshot snapshot = clientSnapshotCache.current();
+            Instant now = Instant.now();
+            String note = snapshot.isOlderThan(ttl)
+                    ? StatusMessageRenderer.renderStaleNote(snapshot.loadedAt().getEpochSecond(), now.getEpochSecond())
+                    : null;
+            ClientReport report = ClientReport.build(snapshot.clients().values(), now.toEpochMilli(),
+                    expiringWindow, TOP_TRAFFIC, note);
+            String id = cursors.put(context.chatId(), report);
+            log.info("Отчёт {} для чата {}: {} стр.", id, context.chatId(), report.pages());
+            context.reply(report.page(0), keyboard(id, 0, report.pages()));
+        } catch (PanelUnavailableException e) {
+            context.reply("Панель сейчас недоступна, попробуйте позже.");
+        } catch (Exception e) {
+            context.reply("Произошла ошибка при построении отчёта.");
+            log.error("Ошибка при построении отчёта для чата {}", context.chatId(), e);
+        }
+    }
+
+    // callback_data: report:<id>:<страница>
+    @Override
+    public void handle(CallbackQuery query) {
+        MaybeInaccessibleMessage message = query.getMessage();
+        String[] parts = query.getData().split(":");
+        if (message == null || parts.length != 3) {
+            answer(query, null);
+            return;
+        }
+        long chatId = message.getChatId();
+        if (!admin.isAdmin(chatId) || CURRENT_PAGE.equals(parts[2])) {
+            answer(query, null);
+            return;
+        }
+
+        ClientReport report = cursors.get(parts[1], chatId);
+        int page = parsePage(parts[2]);
+        if (report == null || page < 0 || page >= report.pages()) {
+            answer(query, "Отчёт устарел, запросите /report заново.");
+            return;
+        }
+
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId);
+        edit.setMessageId(message.getMessageId());
+        edit.setText(report.page(page));
+        edit.setReplyMarkup(keyboard(parts[1], page, report.pages()));
+        // Сначала страница, затем ответ на нажатие: оба идут в тот же чат с паузой между сообщениями
+        outboundDispatcher.submit(edit, chatId, OutboundDispatcher.Lane.INTERACTIVE);
+        answer(query, null);
+    }
+
+    // ⏮ ◀️ 3/120 ▶️ ⏭ — крайние кнопки только там, где есть куда листать
+    private static InlineKeyboardMarkup keyboard(String id, int page, int pages) {
+        if (pages <= 1) {
+            return null;
+        }
+        List<InlineKeyboardButton> row = new ArrayList<>(5);
+        if (page > 0) {
+            row.add(button("⏮", id, 0));
+            row.add(button("◀️", id, page - 1));
+        }
+        InlineKeyboardButton current = new InlineKeyboardButton((page + 1) + "/" + pages);
+        current.setCallbackData(PREFIX + ":" + id + ":" + CURRENT_PAGE);
+        row.add(current);
+        if (page < pages - 1) {
+            row.add(button("▶️", id, page + 1));
+            row.add(button("⏭", id, pages - 1));
+        }
+        return new InlineKeyboardMarkup(List.of(row));
+    }
+
+    private static InlineKeyboardButton button(String text, String id, int page) {
+        InlineKeyboardButton button = new InlineKeyboardButton(text);
+        button.setCallbackData(PREFIX + ":" + id + ":" + page);
+        return button;
+    }
+
+    private void answer(CallbackQuery query, String text) {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery(query.getId());
+        answer.setText(text);
+        long chatId = query.getMessage() != null ? query.getMessage().getChatId() : query.getFrom().getId();
+        outboundDispatcher.submit(answer, chatId, OutboundDispatcher.Lane.INTERACTIVE);
+    }
+
+    private static int parsePage(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.xraybot.bot;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Построенные отчёты, которые можно листать кнопками. Кнопка несёт только
+ * идентификатор отчёта и номер страницы, сам отчёт остаётся на сервере.
+ * Отчёт живёт {@code ttl} и принадлежит чату, в котором его запросили.
+ */
+final class ReportCursors {
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private final Map<String, Cursor> cursors = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int capacity;
+
+    ReportCursors(Duration ttl, int capacity) {
+        this.ttlMillis = ttl.toMillis();
+        this.capacity = capacity;
+    }
+
+    String put(long chatId, ClientReport report) {
+        long now = System.currentTimeMillis();
+        evict(now);
+        String id = Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+        cursors.put(id, new Cursor(chatId, report, now));
+        return id;
+    }
+
+    // null — отчёта нет, он устарел или построен для другого чата
+    ClientReport get(String id, long chatId) {
+        Cursor cursor = cursors.get(id);
+        if (cursor == null || cursor.chatId() != chatId) {
+            return null;
+        }
+        if (System.currentTimeMillis() - cursor.createdAt() > ttlMillis) {
+            cursors.remove(id, cursor);
+            return null;
+        }
+        return cursor.report();
+    }
+
+    int size() {
+        return cursors.size();
+    }
+
+    private void evict(long now) {
+        cursors.values().removeIf(cursor -> now - cursor.createdAt() > ttlMillis);
+        while (cursors.size() >= capacity) {
+            cursors.entrySet().stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().createdAt()))
+                    .ifPresent(oldest -> cursors.remove(oldest.getKey(), oldest.getValue()));
+        }
+    }
+
+    private record Cursor(long chatId, ClientReport report, long createdAt) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.xraybot.bot;
+
+import com.xraybot.service.UserRegistry;
+import com.xraybot.task.NotificationOutbox;
+import org.springframework.stereotype.Component;
+
+@Component
+public class StartCommandHandler implements CommandHandler {
+
+    private final UserRegistry userRegistry;
+    private final NotificationOutbox notificationOutbox;
+
+    public StartCommandHandler(UserRegistry userRegistry, NotificationOutbox notificationOutbox) {
+        this.userRegistry = userRegistry;
+        this.notificationOutbox = notificationOutbox;
+    }
+
+    @Override
+    public BotCommandRegistry command() {
+        return BotCommandRegistry.START;
+    }
+
+    @Override
+    public void handle(CommandContext context) {
+        if (!context.hasUsername()) {
+            context.reply("Пожалуйста, установите username в настройках Telegram, чтобы я мог вас идентифицировать.");
+            return;
+        }
+
+        if (!userRegistry.registerUser(context.username(), context.chatId())) {
+            context.reply("Регистрация временно недоступна, попробуйте позже.");
+            return;
+        }
+        notificationOutbox.revive(context.chatId());
+        context.reply("Привет, @" + context.username() + "! Ты успешно зарегистрирован для получения уведомлений.\n\n" +
+                BotCommandRegistry.asHelpText());
+    }
+}
@@ -0,0 +1,61 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.ClientSnapshotCache;
+import com.xraybot.service.PanelUnavailableException;
+import com.xraybot.service.XrayApiService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@Component
+public class StatusCommandHandler implements CommandHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(StatusCommandHandler.class);
+
+    private final ClientSnapshotCache clientSnapshotCache;
+    private final Duration ttl;
+
+    public StatusCommandHandler(ClientSnapshotCache clientSnapshotCache, XrayProperties properties) {
+        this.clientSnapshotCache = clientSnapshotCache;
+        this.ttl = properties.getCache().getTtl();
+    }
+
+    @Override
+    public BotCommandRegistry command() {
+        return BotCommandRegistry.STATUS;
+    }
+
+    @Override
+    public void handle(CommandContext context) {
+        if (!context.hasUsername()) {
+            context.reply("Невозможно определить ваш username. Убедитесь, что он установлен в Telegram.");
+            return;
+        }
+
+        try {
+            ClientSnapshotCache.Snapshot snapshot = clientSnapshotCache.current();
+            XrayApiService.Client client = snapshot.find(context.username());
+
+            if (client == null) {
+                context.reply("Клиент с именем " + context.username() + " не найден.");
+                return;
+            }
+
+            long now = Instant.now().getEpochSecond();
+            String text = StatusMessageRenderer.renderStatus(context.username(), client, now);
+            if (snapshot.isOlderThan(ttl)) {
+                text += StatusMessageRenderer.renderStaleNote(snapshot.loadedAt().getEpochSecond(), now);
+            }
+            context.replyMarkdown(text);
+        } catch (PanelUnavailableException e) {
+            context.reply("Панель сейчас недоступна, попробуйте позже.");
+        } catch (Exception e) {
+            context.reply("Произошла ошибка при получении статуса.");
+            log.error("Ошибка при получении статуса {}", context.username(), e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.xraybot.bot;
+
+import com.xraybot.service.TrafficStore;
+import com.xraybot.service.XrayApiService;
+
+/**
+ * Тексты ответов на /status и /usage.
+ */
+public final class StatusMessageRenderer {
+
+    private StatusMessageRenderer() {
+    }
+
+    public static String renderStatus(String username, XrayApiService.Client client, long nowEpochSeconds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("📊 Статус клиента `").append(username).append("`\n");
+
+        String status = client.enable() ? "🟢 Активен" : "🔴 Заблокирован";
+        sb.append("🔐 Ключ: ").append(status).append("\n");
+
+        if (client.expiryTime() == 0) {
+            sb.append("⏳ Срок действия: не ограничен").append("\n");
+        } else {
+            long daysLeft = (client.expiryTime() / 1000 - nowEpochSeconds) / (60 * 60 * 24);
+            sb.append("⏳ Срок действия: ").append(Math.max(daysLeft, 0)).append(" дн.").append("\n");
+        }
+
+        sb.append("🔁 Передано:\n");
+        sb.append("  ⬆️ Отправлено: ").append(humanReadableBytes(client.up())).append("\n");
+        sb.append("  ⬇️ Получено: ").append(humanReadableBytes(client.down())).append("\n");
+        return sb.toString();
+    }
+
+    // Снимок не обновлялся дольше TTL — значит, панель не отвечает
+    public static String renderStaleNote(long loadedAtEpochSeconds, long nowEpochSeconds) {
+        long minutes = Math.max(0, (nowEpochSeconds - loadedAtEpochSeconds) / 60);
+        return "\n⚠️ Панель сейчас недоступна, данные получены " + minutes + " мин. назад.\n";
+    }
+
+    public static String renderUsage(String username, TrafficStore.Usage usage) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("📈 Трафик клиента `").append(username).append("`\n");
+        appendUsageLine(sb, "За час", usage.hourUp(), usage.hourDown());
+        appendUsageLine(sb, "За сутки", usage.dayUp(), usage.dayDown());
+        appendUsageLine(sb, "За 30 дней", usage.monthUp(), usage.monthDown());
+        sb.append("⚡ Текущая скорость: ").append(humanReadableBytes(usage.bytesPerSecond())).append("/с\n");
+        return sb.toString();
+    }
+
+    public static String humanReadableBytes(long bytes) {
+        return appendHumanReadableBytes(new StringBuilder(12), bytes).toString();
+    }
+
+    // Без String.format: отчёт по десяткам тысяч клиентов пишет строки в один буфер
+    public static StringBuilder appendHumanReadableBytes(StringBuilder sb, long bytes) {
+        int unit = 1024;
+        if (bytes < unit) return sb.append(bytes).append(" B");
+        int exp = (int) (Math.log(bytes) / Math.log(unit));
+        long tenths = Math.round(bytes * 10 / Math.pow(unit, exp));
+        if (tenths >= unit * 10L && exp < 6) {
+            // 1023.96 KiB округляется до 1.0 MiB, а не до 1024.0 KiB
+            exp++;
+            tenths = Math.round(bytes * 10 / Math.pow(unit, exp));
+        }
+        return sb.append(tenths / 10).append('.').append(tenths % 10)
+                .append(' ').append("KMGTPE".charAt(exp - 1)).append("iB");
+    }
+
+    private static void appendUsageLine(StringBuilder sb, String period, long up, long down) {
+        sb.append("🕒 ").append(period).append(": ⬆️ ").append(humanReadableBytes(up))
+                .append(" / ⬇️ ").append(humanReadableBytes(down)).append("\n");
+    }
+}
@@ -1,18 +1,32 @@
 package com.xraybot.bot;
 
+import com.xraybot.config.ModeCondition;
+import com.xraybot.config.XrayProperties.Telegram.Mode;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
 @Configuration
+@Conditional(TelegramBotInitializer.LongPollingMode.class)
 public class TelegramBotInitializer {
 
     @Bean
-    public TelegramBotsApi telegramBotsApi(NotifyBot notifyBot) throws TelegramApiException {
-        TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-        botsApi.registerBot(notifyBot);
-        return botsApi;
+    public TelegramBotsApi telegramBotsApi() throws TelegramApiException {
+        return new TelegramBotsApi(DefaultBotSession.class);
     }
-}
\ No newline at end of file
+
+    // registerBot ходит в сеть (сброс webhook), поэтому сессия запускается из BotStartup, а не при создании бина
+    @Bean
+    public BotConnection longPollingConnection(TelegramBotsApi telegramBotsApi, NotifyBot notifyBot) {
+        return () -> telegramBotsApi.registerBot(notifyBot);
+    }
+
+    static class LongPollingMode extends ModeCondition<Mode> {
+        LongPollingMode() {
+            super("xray.telegram.mode", Mode.class, Mode.LONG_POLLING, Mode.LONG_POLLING);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.ModeCondition;
+import com.xraybot.config.XrayProperties;
+import com.xraybot.config.XrayProperties.Telegram.Mode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Приём обновлений через webhook вместо long polling. Telegram присылает
+ * обновления POST-запросами; после проверки секретного заголовка они уходят
+ * в ту же обработку, что и при long polling, а ответ 200 возвращается сразу.
+ * Сам webhook регистрируется из {@link BotStartup} после старта приложения.
+ */
+@RestController
+@Conditional(TelegramWebhookController.WebhookMode.class)
+public class TelegramWebhookController implements BotConnection {
+
+    private static final Logger log = LoggerFactory.getLogger(TelegramWebhookController.class);
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final NotifyBot notifyBot;
+    private final XrayProperties.Telegram.Webhook webhook;
+    private final byte[] secretToken;
+
+    public TelegramWebhookController(NotifyBot notifyBot, XrayProperties properties) {
+        this.notifyBot = notifyBot;
+        this.webhook = properties.getTelegram().getWebhook();
+        if (webhook.getUrl() == null || webhook.getUrl().isBlank()) {
+            // Иначе ошибка всплыла бы только при регистрации webhook, когда приложение уже запущено
+            throw new IllegalStateException("Для режима webhook нужен xray.telegram.webhook.url");
+        }
+        if (webhook.getSecretToken() == null || webhook.getSecretToken().isBlank()) {
+            throw new IllegalStateException("Для режима webhook нужен xray.telegram.webhook.secret-token");
+        }
+        this.secretToken = webhook.getSecretToken().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping("${xray.telegram.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(@RequestHeader(value = SECRET_HEADER, required = false) String token,
+                                         @RequestBody Update update) {
+        if (token == null || !MessageDigest.isEqual(secretToken, token.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        notifyBot.onUpdateReceived(update);
+        return ResponseEntity.ok().build();
+    }
+
+    @Override
+    public void connect() throws TelegramApiException {
+        SetWebhook setWebhook = SetWebhook.builder()
+                .url(webhook.getUrl())
+                .secretToken(webhook.getSecretToken())
+                .maxConnections(webhook.getMaxConnections())
+                .build();
+        notifyBot.execute(setWebhook);
+        log.info("Webhook зарегистрирован: {}", webhook.getUrl());
+    }
+
+    static class WebhookMode extends ModeCondition<Mode> {
+        WebhookMode() {
+            super("xray.telegram.mode", Mode.class, Mode.LONG_POLLING, Mode.WEBHOOK);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.TrafficStore;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+@Component
+public class UsageCommandHandler implements CommandHandler {
+
+    private final TrafficStore trafficStore;
+    private final long rateStaleAfterSeconds;
+
+    public UsageCommandHandler(TrafficStore trafficStore, XrayProperties properties) {
+        this.trafficStore = trafficStore;
+        // Без прироста дольше двух циклов обновления клиент считается неактивным
+        this.rateStaleAfterSeconds = properties.getCache().getRefreshInterval().multipliedBy(2).toSeconds();
+    }
+
+    @Override
+    public BotCommandRegistry command() {
+        return BotCommandRegistry.USAGE;
+    }
+
+    @Override
+    public void handle(CommandContext context) {
+        if (!context.hasUsername()) {
+            context.reply("Невозможно определить ваш username. Убедитесь, что он установлен в Telegram.");
+            return;
+        }
+
+        // Статистика берётся из локального хранилища, панель не опрашивается
+        TrafficStore.Usage usage = trafficStore.usage(context.username(), Instant.now(), rateStaleAfterSeconds);
+        if (usage == null) {
+            context.reply("Статистика трафика для " + context.username() + " пока не собрана.");
+            return;
+        }
+
+        context.replyMarkdown(StatusMessageRenderer.renderUsage(context.username(), usage));
+    }
+}
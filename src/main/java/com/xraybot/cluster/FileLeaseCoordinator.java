@@ -0,0 +1,253 @@
+package com.xraybot.cluster;
+
+import com.xraybot.config.ModeCondition;
+import com.xraybot.config.XrayProperties;
+import com.xraybot.config.XrayProperties.Cluster.Mode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Активная и резервные реплики с общим каталогом (NFS, общий том Docker и т.п.).
+ * <p>
+ * Работает только реплика, держащая аренду в файле {@code leader.lease}
+ * ({@code nodeId} и срок действия); чтение и запись аренды идут под
+ * блокировкой {@code leader.lock}. Остальные реплики ждут аренду ещё при
+ * старте, до создания компонентов с состоянием, поэтому не подключаются к
+ * Telegram и не открывают файлы состояния. Так регистрации, журнал порогов
+ * и очередь уведомлений можно держать на общем томе ({@code xray.storage.dir}):
+ * пишет их всегда один процесс.
+ * <p>
+ * Аренда продлевается отдельным потоком. Если продлить её не удалось до
+ * истечения или её забрал другой узел, процесс останавливается сразу, без
+ * штатного завершения: иначе он дописал бы в общие файлы устаревшее
+ * состояние поверх записей нового ведущего. Сроки сравниваются по настенным
+ * часам, поэтому часы узлов должны быть синхронизированы с точностью много
+ * меньше аренды.
+ */
+@Component("replicaCoordinator")
+@Conditional(FileLeaseCoordinator.FileLeaseMode.class)
+public class FileLeaseCoordinator implements ReplicaCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(FileLeaseCoordinator.class);
+    // FileLock принадлежит всей JVM: второй захват из того же процесса бросил бы
+    // OverlappingFileLockException, поэтому внутри процесса захваты идут по очереди
+    private static final Object LOCAL_LOCK = new Object();
+
+    private final Path leaseFile;
+    private final Path lockFile;
+    private final String nodeId;
+    private final long leaseMillis;
+    private final long heartbeatMillis;
+    private final Runnable onLeaseLost;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("lease-heartbeat").daemon().factory());
+
+    private boolean leader;
+    // Когда аренда последний раз записана этим узлом; 0 — не ведущий
+    private volatile long renewedAt;
+
+    @Autowired
+    public FileLeaseCoordinator(XrayProperties properties) {
+        this(properties, FileLeaseCoordinator::halt);
+    }
+
+    FileLeaseCoordinator(XrayProperties properties, Runnable onLeaseLost) {
+        XrayProperties.Cluster cluster = properties.getCluster();
+        if (cluster.isPartitioning()) {
+            // Обновления Telegram получает одна реплика, и только у неё есть регистрации пользователей
+            throw new IllegalStateException("xray.cluster.partitioning не поддерживается: "
+                    + "уведомления рассылает единственная активная реплика");
+        }
+        Path dir = Path.of(cluster.getLeaseDir());
+        this.leaseFile = dir.resolve("leader.lease");
+        this.lockFile = dir.resolve("leader.lock");
+        this.nodeId = sanitize(cluster.getNodeId() != null && !cluster.getNodeId().isBlank()
+                ? cluster.getNodeId()
+                : defaultNodeId());
+        this.leaseMillis = cluster.getLeaseDuration().toMillis();
+        this.heartbeatMillis = cluster.getHeartbeatInterval().toMillis();
+        if (heartbeatMillis * 2 > leaseMillis) {
+            throw new IllegalStateException("xray.cluster.heartbeat-interval должен быть не больше половины lease-duration");
+        }
+        this.onLeaseLost = onLeaseLost;
+    }
+
+    /**
+     * Ждёт аренду. Вызывается при старте контекста: компоненты с состоянием
+     * зависят от координатора и создаются только после того, как узел стал ведущим.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(leaseFile.getParent());
+        log.info("Координация реплик через {}, узел {}", leaseFile.getParent(), nodeId);
+        boolean announced = false;
+        while (!tryAcquire()) {
+            if (!announced) {
+                log.info("Узел {} в резерве: аренду держит другая реплика", nodeId);
+                announced = true;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(heartbeatMillis);
+            } catch (InterruptedException e) {
+                // Контекст закрывают, пока узел ждёт аренду
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Ожидание аренды прервано", e);
+            }
+        }
+        heartbeat.scheduleWithFixedDelay(this::renew, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean isActive() {
+        return System.currentTimeMillis() - renewedAt < leaseMillis;
+    }
+
+    private void renew() {
+        String reason;
+        try {
+            // Аренда продлена или узел уже освобождает её при остановке
+            if (tryAcquire() || heartbeat.isShutdown()) {
+                return;
+            }
+            reason = "аренду забрал другой узел";
+        } catch (IOException e) {
+            // Пока аренда не истекла, другой узел её не заберёт — можно повторить на следующем такте
+            if (heartbeat.isShutdown()) {
+                return;
+            }
+            if (System.currentTimeMillis() - renewedAt < leaseMillis - heartbeatMillis) {
+                log.warn("Не удалось продлить аренду в {}: {}", leaseFile.getParent(), e.getMessage());
+                return;
+            }
+            reason = "аренда истекает и не продлевается: " + e.getMessage();
+        }
+        log.error("Узел {} останавливается — {}", nodeId, reason);
+        renewedAt = 0;
+        onLeaseLost.run();
+    }
+
+    private synchronized boolean tryAcquire() throws IOException {
+        if (heartbeat.isShutdown()) {
+            return false;
+        }
+        synchronized (LOCAL_LOCK) {
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    long now = System.currentTimeMillis();
+                    Lease current = readLease();
+                    boolean acquired = current == null || current.expiresAt() < now || current.nodeId().equals(nodeId);
+                    if (acquired) {
+                        writeAtomically(leaseFile, nodeId + "\n" + (now + leaseMillis));
+                        renewedAt = now;
+                    }
+                    if (acquired != leader) {
+                        log.info(acquired ? "Узел {} стал ведущим" : "Узел {} больше не ведущий, аренда у {}",
+                                nodeId, current != null ? current.nodeId() : "-");
+                        leader = acquired;
+                    }
+                    return acquired;
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    private Lease readLease() throws IOException {
+        if (!Files.exists(leaseFile)) {
+            return null;
+        }
+        List<String> lines = Files.readAllLines(leaseFile, StandardCharsets.UTF_8);
+        if (lines.size() < 2) {
+            return null;
+        }
+        try {
+            return new Lease(lines.get(0), Long.parseLong(lines.get(1).strip()));
+        } catch (NumberFormatException e) {
+            log.warn("Повреждённый файл аренды {} — считается свободным", leaseFile);
+            return null;
+        }
+    }
+
+    private static void writeAtomically(Path target, String content) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.writeString(tmp, content, StandardCharsets.UTF_8);
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // При штатной остановке освобождаем аренду сразу, не дожидаясь её истечения.
+    // Компоненты с состоянием зависят от координатора и к этому моменту уже закрыты
+    @PreDestroy
+    public synchronized void release() {
+        heartbeat.shutdownNow();
+        if (!leader) {
+            return;
+        }
+        synchronized (LOCAL_LOCK) {
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    Lease current = readLease();
+                    if (current != null && current.nodeId().equals(nodeId)) {
+                        Files.deleteIfExists(leaseFile);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                log.warn("Не удалось освободить аренду: {}", e.getMessage());
+            }
+        }
+        leader = false;
+        renewedAt = 0;
+    }
+
+    // Без shutdown-хуков: штатное завершение сбросило бы на общий том устаревшее состояние
+    private static void halt() {
+        Runtime.getRuntime().halt(1);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "node";
+        }
+        return host + "-" + ManagementFactory.getRuntimeMXBean().getPid();
+    }
+
+    private static String sanitize(String id) {
+        return id.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private record Lease(String nodeId, long expiresAt) {
+    }
+
+    static class FileLeaseMode extends ModeCondition<Mode> {
+        FileLeaseMode() {
+            super("xray.cluster.mode", Mode.class, Mode.SINGLE, Mode.FILE_LEASE);
+        }
+    }
+}
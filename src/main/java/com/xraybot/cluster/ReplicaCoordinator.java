@@ -0,0 +1,15 @@
+package com.xraybot.cluster;
+
+/**
+ * Какая из реплик бота сейчас работает. Компоненты с состоянием на диске
+ * зависят от бина {@code replicaCoordinator} и создаются только после того,
+ * как узел получил право работать.
+ */
+public interface ReplicaCoordinator {
+
+    /**
+     * Может ли узел прямо сейчас рассылать уведомления. {@code false} бывает
+     * только в короткое окно, когда аренда потеряна и процесс останавливается.
+     */
+    boolean isActive();
+}
@@ -0,0 +1,22 @@
+package com.xraybot.cluster;
+
+import com.xraybot.config.ModeCondition;
+import com.xraybot.config.XrayProperties.Cluster.Mode;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Component;
+
+@Component("replicaCoordinator")
+@Conditional(SingleNodeCoordinator.SingleMode.class)
+public class SingleNodeCoordinator implements ReplicaCoordinator {
+
+    @Override
+    public boolean isActive() {
+        return true;
+    }
+
+    static class SingleMode extends ModeCondition<Mode> {
+        SingleMode() {
+            super("xray.cluster.mode", Mode.class, Mode.SINGLE, Mode.SINGLE);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.xraybot.config;
+
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Условие на режим из {@link XrayProperties}. Значение читается тем же
+ * связыванием, что и сами настройки, поэтому {@code long-polling},
+ * {@code LONG_POLLING} и {@code longPolling} дают один режим, а опечатка
+ * останавливает старт, а не оставляет приложение без нужного бина.
+ */
+public abstract class ModeCondition<E extends Enum<E>> implements Condition {
+
+    private final String property;
+    private final Class<E> type;
+    private final E defaultMode;
+    private final E expected;
+
+    protected ModeCondition(String property, Class<E> type, E defaultMode, E expected) {
+        this.property = property;
+        this.type = type;
+        this.defaultMode = defaultMode;
+        this.expected = expected;
+    }
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        E mode = Binder.get(context.getEnvironment()).bind(property, Bindable.of(type)).orElse(defaultMode);
+        return mode == expected;
+    }
+}
@@ -3,6 +3,11 @@ package com.xraybot.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "xray")
 public class XrayProperties {
@@ -11,6 +16,17 @@ public class XrayProperties {
     private String password;
     private String botToken;
     private String botUsername;
+    private final Cache cache = new Cache();
+    private final Http http = new Http();
+    private final Telegram telegram = new Telegram();
+    private final Updates updates = new Updates();
+    private final Notifications notifications = new Notifications();
+    private final Circuit circuit = new Circuit();
+    private final Cluster cluster = new Cluster();
+    private final Admin admin = new Admin();
+    private final Storage storage = new Storage();
+    // Несколько панелей 3X-UI; если список пуст, используется одна панель из base-url/username/password
+    private List<Panel> panels = new ArrayList<>();
 
     // Getters and Setters
 
@@ -53,4 +69,519 @@ public class XrayProperties {
     public void setBotUsername(String botUsername) {
         this.botUsername = botUsername;
     }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Http getHttp() {
+        return http;
+    }
+
+    public Telegram getTelegram() {
+        return telegram;
+    }
+
+    public Updates getUpdates() {
+        return updates;
+    }
+
+    public Notifications getNotifications() {
+        return notifications;
+    }
+
+    public Circuit getCircuit() {
+        return circuit;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public Admin getAdmin() {
+        return admin;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public List<Panel> getPanels() {
+        return panels;
+    }
+
+    public void setPanels(List<Panel> panels) {
+        this.panels = panels;
+    }
+
+    // Панели с учётом старой настройки одной панели
+    public List<Panel> effectivePanels() {
+        if (!panels.isEmpty()) {
+            return panels;
+        }
+        Panel single = new Panel();
+        single.setName("default");
+        single.setBaseUrl(baseUrl);
+        single.setUsername(username);
+        single.setPassword(password);
+        return List.of(single);
+    }
+
+    public static class Cache {
+        // Через сколько снимок клиентов считается устаревшим и обновляется в фоне
+        private Duration ttl = Duration.ofMinutes(1);
+        // Период фонового обновления снимка
+        private Duration refreshInterval = Duration.ofSeconds(30);
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+    }
+
+    public static class Http {
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration readTimeout = Duration.ofSeconds(15);
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+    }
+
+    public static class Telegram {
+        // Общий лимит Bot API — около 30 сообщений в секунду
+        private int messagesPerSecond = 30;
+        // Не чаще одного сообщения в секунду в один чат
+        private Duration perChatInterval = Duration.ofSeconds(1);
+        // Сколько запросов к Bot API выполняется одновременно; в один чат — всегда по одному
+        private int senders = 4;
+        private Mode mode = Mode.LONG_POLLING;
+        private final Webhook webhook = new Webhook();
+
+        public int getMessagesPerSecond() {
+            return messagesPerSecond;
+        }
+
+        public void setMessagesPerSecond(int messagesPerSecond) {
+            this.messagesPerSecond = messagesPerSecond;
+        }
+
+        public Duration getPerChatInterval() {
+            return perChatInterval;
+        }
+
+        public void setPerChatInterval(Duration perChatInterval) {
+            this.perChatInterval = perChatInterval;
+        }
+
+        public int getSenders() {
+            return senders;
+        }
+
+        public void setSenders(int senders) {
+            this.senders = senders;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public Webhook getWebhook() {
+            return webhook;
+        }
+
+        public enum Mode {
+            LONG_POLLING,
+            WEBHOOK
+        }
+
+        public static class Webhook {
+            // Публичный адрес, который Telegram будет вызывать (обычно через reverse proxy)
+            private String url;
+            private String path = "/telegram/webhook";
+            // Значение заголовка X-Telegram-Bot-Api-Secret-Token
+            private String secretToken;
+            private int maxConnections = 40;
+
+            public String getUrl() {
+                return url;
+            }
+
+            public void setUrl(String url) {
+                this.url = url;
+            }
+
+            public String getPath() {
+                return path;
+            }
+
+            public void setPath(String path) {
+                this.path = path;
+            }
+
+            public String getSecretToken() {
+                return secretToken;
+            }
+
+            public void setSecretToken(String secretToken) {
+                this.secretToken = secretToken;
+            }
+
+            public int getMaxConnections() {
+                return maxConnections;
+            }
+
+            public void setMaxConnections(int maxConnections) {
+                this.maxConnections = maxConnections;
+            }
+        }
+    }
+
+    public static class Updates {
+        // Сколько входящих обновлений может ждать обработки одновременно
+        private int queueCapacity = 1000;
+        private ShedPolicy shedPolicy = ShedPolicy.NOTIFY;
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public ShedPolicy getShedPolicy() {
+            return shedPolicy;
+        }
+
+        public void setShedPolicy(ShedPolicy shedPolicy) {
+            this.shedPolicy = shedPolicy;
+        }
+
+        public enum ShedPolicy {
+            // Молча отбросить обновление
+            DROP,
+            // Отбросить и ответить пользователю, что бот перегружен
+            NOTIFY
+        }
+    }
+
+    public static class Admin {
+        // Чаты, которым доступны служебные команды вроде /report
+        private List<Long> chatIds = new ArrayList<>();
+        // Сколько страницы отчёта можно листать после его построения
+        private Duration reportTtl = Duration.ofMinutes(15);
+
+        public List<Long> getChatIds() {
+            return chatIds;
+        }
+
+        public void setChatIds(List<Long> chatIds) {
+            this.chatIds = chatIds;
+        }
+
+        public Duration getReportTtl() {
+            return reportTtl;
+        }
+
+        public void setReportTtl(Duration reportTtl) {
+            this.reportTtl = reportTtl;
+        }
+
+        public boolean isAdmin(long chatId) {
+            return chatIds.contains(chatId);
+        }
+    }
+
+    public static class Notifications {
+        // За сколько дней до окончания предупреждать; 0 — уведомление об истёкшем ключе
+        private List<Integer> thresholds = new ArrayList<>(List.of(7, 3, 1, 0));
+
+        public List<Integer> getThresholds() {
+            return thresholds;
+        }
+
+        public void setThresholds(List<Integer> thresholds) {
+            this.thresholds = thresholds;
+        }
+    }
+
+    public static class Circuit {
+        // Доля неудачных вызовов (в процентах) среди последних, после которой панель считается недоступной
+        private int failureRateThreshold = 50;
+        // Сколько последних вызовов учитывается
+        private int slidingWindowSize = 20;
+        // Меньше вызовов в окне — решение не принимается
+        private int minimumCalls = 5;
+        // Сколько ждать перед пробным вызовом
+        private Duration openDuration = Duration.ofSeconds(30);
+        // Одновременных вызовов панели не больше этого числа
+        private int maxConcurrentCalls = 4;
+        // Сколько вызов ждёт свободного места, прежде чем получить отказ
+        private Duration maxWait = Duration.ofSeconds(2);
+
+        public int getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public int getSlidingWindowSize() {
+            return slidingWindowSize;
+        }
+
+        public void setSlidingWindowSize(int slidingWindowSize) {
+            this.slidingWindowSize = slidingWindowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+    }
+
+    public static class Cluster {
+        private Mode mode = Mode.SINGLE;
+        // Каталог на общем для всех реплик томе
+        private String leaseDir = "cluster";
+        // Сколько аренда ведущего действует без продления; продлевается каждые heartbeatInterval
+        private Duration leaseDuration = Duration.ofSeconds(30);
+        private Duration heartbeatInterval = Duration.ofSeconds(10);
+        // Пусто — имя хоста и pid
+        private String nodeId;
+        // Разбиение клиентов между репликами не поддерживается: при true старт завершается ошибкой
+        private boolean partitioning;
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public String getLeaseDir() {
+            return leaseDir;
+        }
+
+        public void setLeaseDir(String leaseDir) {
+            this.leaseDir = leaseDir;
+        }
+
+        public Duration getLeaseDuration() {
+            return leaseDuration;
+        }
+
+        public void setLeaseDuration(Duration leaseDuration) {
+            this.leaseDuration = leaseDuration;
+        }
+
+        public Duration getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        public void setHeartbeatInterval(Duration heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public boolean isPartitioning() {
+            return partitioning;
+        }
+
+        public void setPartitioning(boolean partitioning) {
+            this.partitioning = partitioning;
+        }
+
+        public enum Mode {
+            // Единственный экземпляр — координация не нужна
+            SINGLE,
+            // Активная реплика и резервные, аренда через файлы в общем каталоге
+            FILE_LEASE
+        }
+    }
+
+    public static class Storage {
+        // Каталог файлов состояния; относительные имена ниже считаются от него
+        private String dir = ".";
+        private String userMap = "user_map.json";
+        private String userJournal = "user_map.journal";
+        private String notificationLedger = "notification_ledger.json";
+        private String notificationOutbox = "notification_outbox.journal";
+        private String traffic = "traffic.dat";
+        private String commandMenuHash = "bot_commands.sha256";
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public String getUserMap() {
+            return userMap;
+        }
+
+        public void setUserMap(String userMap) {
+            this.userMap = userMap;
+        }
+
+        public String getUserJournal() {
+            return userJournal;
+        }
+
+        public void setUserJournal(String userJournal) {
+            this.userJournal = userJournal;
+        }
+
+        public String getNotificationLedger() {
+            return notificationLedger;
+        }
+
+        public void setNotificationLedger(String notificationLedger) {
+            this.notificationLedger = notificationLedger;
+        }
+
+        public String getNotificationOutbox() {
+            return notificationOutbox;
+        }
+
+        public void setNotificationOutbox(String notificationOutbox) {
+            this.notificationOutbox = notificationOutbox;
+        }
+
+        public String getTraffic() {
+            return traffic;
+        }
+
+        public void setTraffic(String traffic) {
+            this.traffic = traffic;
+        }
+
+        public String getCommandMenuHash() {
+            return commandMenuHash;
+        }
+
+        public void setCommandMenuHash(String commandMenuHash) {
+            this.commandMenuHash = commandMenuHash;
+        }
+
+        // Абсолютное имя файла остаётся как есть, относительное — внутри dir
+        public Path resolve(String file) {
+            return Path.of(dir).resolve(file);
+        }
+    }
+
+    public static class Panel {
+        private String name;
+        private String baseUrl;
+        private String username;
+        private String password;
+        // Пусто — xray.cache.refresh-interval
+        private Duration refreshInterval;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public void setBaseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+    }
 }
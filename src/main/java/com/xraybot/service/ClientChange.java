@@ -0,0 +1,36 @@
+package com.xraybot.service;
+
+import com.xraybot.service.XrayApiService.Client;
+
+/**
+ * Изменение одного клиента между двумя опросами панели.
+ */
+public sealed interface ClientChange {
+
+    String email();
+
+    record Added(Client client) implements ClientChange {
+        @Override
+        public String email() {
+            return client.email();
+        }
+    }
+
+    record Removed(Client client) implements ClientChange {
+        @Override
+        public String email() {
+            return client.email();
+        }
+    }
+
+    record EnableChanged(String email, boolean enabled) implements ClientChange {
+    }
+
+    record ExpiryChanged(String email, long previousExpiryTime, long expiryTime) implements ClientChange {
+    }
+
+    // Прирост трафика и новые значения счётчиков панели (up, down). Прирост, посчитанный
+    // по каждой панели, не бывает отрицательным; отрицательный — сброс счётчика в панели
+    record TrafficIncreased(String email, long upDelta, long downDelta, long up, long down) implements ClientChange {
+    }
+}
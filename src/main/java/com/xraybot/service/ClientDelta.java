@@ -0,0 +1,20 @@
+package com.xraybot.service;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Все изменения клиентов за один опрос панели. Публикуется как событие
+ * приложения; {@code initial} — первый снимок после старта, где все клиенты
+ * приходят как {@link ClientChange.Added}.
+ */
+public record ClientDelta(Instant polledAt, boolean initial, List<ClientChange> changes) {
+
+    public <T extends ClientChange> List<T> changesOf(Class<T> type) {
+        return changes.stream().filter(type::isInstance).map(type::cast).toList();
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+}
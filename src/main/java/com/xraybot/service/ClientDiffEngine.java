@@ -0,0 +1,115 @@
+package com.xraybot.service;
+
+import com.xraybot.service.XrayApiService.Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сравнивает очередной снимок клиентов с предыдущим и публикует
+ * {@link ClientDelta} с добавленными, удалёнными, включёнными/отключёнными
+ * клиентами, изменениями срока и приростом трафика. Подписчики получают
+ * только изменившихся клиентов. Прирост трафика берётся из накопленных по
+ * каждой панели счётчиков {@link PanelFederation.Traffic}, если они переданы:
+ * разность сумм по панелям не отличает сброс в одной панели от простоя.
+ */
+@Component
+public class ClientDiffEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientDiffEngine.class);
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private Map<String, Client> previous;
+    private Map<String, PanelFederation.Traffic> previousTraffic = Map.of();
+
+    public ClientDiffEngine(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Принимает новый снимок (ключ — email) и публикует изменения относительно предыдущего.
+     * Прирост трафика — разность счётчиков снимков; сброс даёт отрицательный прирост.
+     */
+    public ClientDelta apply(Map<String, Client> current) {
+        return apply(current, Map.of());
+    }
+
+    /**
+     * То же, но прирост трафика клиента считается по накопленным счётчикам
+     * {@code traffic} (ключи те же, что у снимка), когда они есть в обоих снимках.
+     */
+    public synchronized ClientDelta apply(Map<String, Client> current, Map<String, PanelFederation.Traffic> traffic) {
+        boolean initial = previous == null;
+        List<ClientChange> changes = initial ? added(current) : diff(previous, current, previousTraffic, traffic);
+        previous = current;
+        previousTraffic = traffic;
+
+        ClientDelta delta = new ClientDelta(Instant.now(), initial, List.copyOf(changes));
+        if (!delta.isEmpty()) {
+            log.debug("Изменений клиентов за опрос: {}", changes.size());
+            eventPublisher.publishEvent(delta);
+        }
+        return delta;
+    }
+
+    private static List<ClientChange> added(Map<String, Client> current) {
+        List<ClientChange> changes = new ArrayList<>(current.size());
+        for (Client client : current.values()) {
+            changes.add(new ClientChange.Added(client));
+        }
+        return changes;
+    }
+
+    private static List<ClientChange> diff(Map<String, Client> before, Map<String, Client> after,
+                                           Map<String, PanelFederation.Traffic> trafficBefore,
+                                           Map<String, PanelFederation.Traffic> trafficAfter) {
+        List<ClientChange> changes = new ArrayList<>();
+
+        for (Map.Entry<String, Client> entry : after.entrySet()) {
+            Client now = entry.getValue();
+            Client was = before.get(entry.getKey());
+            if (was == null) {
+                changes.add(new ClientChange.Added(now));
+                continue;
+            }
+            PanelFederation.Traffic totalNow = trafficAfter.get(entry.getKey());
+            PanelFederation.Traffic totalWas = trafficBefore.get(entry.getKey());
+            boolean counted = totalNow != null && totalWas != null;
+            if (was.equals(now) && (!counted || totalNow.equals(totalWas))) {
+                continue;
+            }
+            if (was.enable() != now.enable()) {
+                changes.add(new ClientChange.EnableChanged(now.email(), now.enable()));
+            }
+            if (was.expiryTime() != now.expiryTime()) {
+                changes.add(new ClientChange.ExpiryChanged(now.email(), was.expiryTime(), now.expiryTime()));
+            }
+            if (counted) {
+                // Накопленные счётчики уменьшаются, только если клиент пропал из одной из панелей
+                long upDelta = Math.max(0, totalNow.up() - totalWas.up());
+                long downDelta = Math.max(0, totalNow.down() - totalWas.down());
+                if (upDelta != 0 || downDelta != 0 || was.up() != now.up() || was.down() != now.down()) {
+                    changes.add(new ClientChange.TrafficIncreased(now.email(), upDelta, downDelta, now.up(), now.down()));
+                }
+            } else if (was.up() != now.up() || was.down() != now.down()) {
+                changes.add(new ClientChange.TrafficIncreased(
+                        now.email(), now.up() - was.up(), now.down() - was.down(), now.up(), now.down()));
+            }
+        }
+
+        for (Map.Entry<String, Client> entry : before.entrySet()) {
+            if (!after.containsKey(entry.getKey())) {
+                changes.add(new ClientChange.Removed(entry.getValue()));
+            }
+        }
+
+        return changes;
+    }
+}
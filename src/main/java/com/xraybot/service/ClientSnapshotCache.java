@@ -0,0 +1,172 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.XrayApiService.Client;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Снимок всех клиентов всех панелей в памяти. Каждая панель опрашивается
+ * по своему расписанию одним запросом {@code /panel/api/inbounds/list};
+ * после каждого удачного опроса снимок пересобирается из последних данных
+ * панелей без обращения к сети. Чтение всегда идёт из памяти; если данные
+ * какой-то панели старше TTL (опрос отстал или панель недоступна), снимок
+ * отдаётся сразу, а устаревшие панели перечитываются в фоне. Сеть никогда
+ * не опрашивается под монитором: под ним снимок только собирается из
+ * последних данных панелей и подменяется.
+ */
+@Service
+@DependsOn("replicaCoordinator")
+public class ClientSnapshotCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientSnapshotCache.class);
+
+    private final PanelFederation panelFederation;
+    private final XrayProperties xrayProperties;
+    private final ClientDiffEngine clientDiffEngine;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("client-snapshot-refresh").factory());
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Синхронная загрузка, которую ждут остальные вызовы refresh()
+    private final AtomicReference<CompletableFuture<Snapshot>> loading = new AtomicReference<>();
+
+    private volatile Snapshot snapshot;
+
+    public ClientSnapshotCache(PanelFederation panelFederation,
+                               XrayProperties xrayProperties,
+                               ClientDiffEngine clientDiffEngine) {
+        this.panelFederation = panelFederation;
+        this.xrayProperties = xrayProperties;
+        this.clientDiffEngine = clientDiffEngine;
+    }
+
+    @PostConstruct
+    public void start() {
+        panelFederation.startPolling(this::rebuild);
+    }
+
+    public Client find(String email) throws Exception {
+        return current().find(email);
+    }
+
+    /**
+     * Снимок без ожидания панелей: пока какая-то из них недоступна, в снимке
+     * остаются её последние данные — вызывающий сам решает, как пометить их возраст.
+     */
+    public Snapshot current() throws Exception {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Первое обращение — ждать некого, загружаем синхронно
+            return refresh();
+        }
+        if (panelFederation.needsRefresh(xrayProperties.getCache().getTtl())) {
+            refreshAsync();
+        }
+        return current;
+    }
+
+    public void refreshAsync() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refresher.execute(() -> {
+            try {
+                panelFederation.pollStale(xrayProperties.getCache().getTtl());
+                publish();
+            } catch (Exception e) {
+                log.warn("Не удалось обновить снимок клиентов: {}", e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Перечитывает устаревшие панели и ждёт их. Одновременные вызовы ждут
+     * одну загрузку, а не опрашивают панели каждый сам.
+     */
+    public Snapshot refresh() throws Exception {
+        Duration ttl = xrayProperties.getCache().getTtl();
+        Snapshot current = snapshot;
+        if (current != null && !panelFederation.needsRefresh(ttl)) {
+            return current;
+        }
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        CompletableFuture<Snapshot> running = loading.compareAndExchange(null, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        try {
+            panelFederation.pollStale(ttl);
+            Snapshot loaded = publish();
+            mine.complete(loaded);
+            return loaded;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.set(null);
+        }
+    }
+
+    /**
+     * Принудительно перечитывает клиентов всех панелей независимо от TTL.
+     */
+    public Snapshot reload() throws Exception {
+        panelFederation.pollAll();
+        return publish();
+    }
+
+    private void rebuild() {
+        try {
+            publish();
+        } catch (Exception e) {
+            log.warn("Не удалось собрать снимок клиентов: {}", e.getMessage());
+        }
+    }
+
+    // Вид собирается под монитором из последних данных панелей, поэтому поздно
+    // завершившийся опрос не подменит снимок более старым
+    private synchronized Snapshot publish() throws Exception {
+        PanelFederation.View view = panelFederation.view();
+        Snapshot loaded = new Snapshot(Map.copyOf(view.clients()), view.loadedAt());
+        snapshot = loaded;
+        clientDiffEngine.apply(loaded.clients(), view.traffic());
+        log.debug("Снимок клиентов обновлён: {} клиентов", loaded.clients().size());
+        return loaded;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    public record Snapshot(Map<String, Client> clients, Instant loadedAt) {
+
+        public Client find(String email) {
+            return clients.get(UserIndex.normalize(email));
+        }
+
+        public boolean isOlderThan(Duration ttl) {
+            return loadedAt.plus(ttl).isBefore(Instant.now());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Транспорт на {@link HttpClient}: у каждой панели свой клиент со своим пулом
+ * keep-alive соединений и TLS-сессий, по возможности используется HTTP/2.
+ */
+public class HttpClientPanelTransport implements PanelTransport {
+
+    private final XrayProperties.Http http;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client;
+
+    public HttpClientPanelTransport(XrayProperties.Http http) {
+        this.http = http;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(http.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public PanelResponse get(String url, String cookie) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(http.getReadTimeout())
+                .header("Cookie", cookie)
+                .GET()
+                .build();
+        return send(request);
+    }
+
+    @Override
+    public PanelResponse postForm(String url, String form) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(http.getReadTimeout())
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        return send(request);
+    }
+
+    private PanelResponse send(HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return new PanelResponse(
+                response.statusCode(),
+                response.body(),
+                response.headers().allValues("Set-Cookie")
+        );
+    }
+
+    @Override
+    public void close() {
+        client.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,114 @@
+package com.xraybot.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.xraybot.service.XrayApiService.Client;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый разбор ответов 3X-UI без построения дерева {@code JsonNode}.
+ * Клиенты отдаются по одному по мере чтения, ненужные поля пропускаются.
+ */
+public class InboundListParser {
+
+    private final JsonFactory jsonFactory;
+
+    public InboundListParser(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Читает поле {@code success} верхнего уровня. Панель пишет его первым,
+     * поэтому остальной ответ обычно не разбирается.
+     */
+    public boolean isSuccess(String body) {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("success".equals(field)) {
+                    return value == JsonToken.VALUE_TRUE;
+                }
+                parser.skipChildren();
+            }
+            return false;
+        } catch (IOException e) {
+            // Не JSON — обычно это HTML-страница входа
+            return false;
+        }
+    }
+
+    /**
+     * Обходит {@code clientStats} всех inbound'ов из ответа {@code /panel/api/inbounds/list}.
+     */
+    public void forEachClientStat(String body, Consumer<Client> visitor) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT
+                    || !seekField(parser, "obj")
+                    || parser.nextToken() != JsonToken.START_ARRAY) {
+                return;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("clientStats".equals(field) && value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            visitor.accept(readClient(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    // Перематывает текущий объект до поля name; парсер остаётся на FIELD_NAME
+    private static boolean seekField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (name.equals(parser.currentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    // Ожидает парсер на START_OBJECT, оставляет на END_OBJECT
+    private static Client readClient(JsonParser parser) throws IOException {
+        String email = "";
+        long expiryTime = 0;
+        long up = 0;
+        long down = 0;
+        boolean enable = true;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value.isStructStart()) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "email" -> email = value == JsonToken.VALUE_NULL ? "" : parser.getValueAsString("");
+                case "expiryTime" -> expiryTime = parser.getValueAsLong(0);
+                case "up" -> up = parser.getValueAsLong(0);
+                case "down" -> down = parser.getValueAsLong(0);
+                case "enable" -> enable = parser.getValueAsBoolean(true);
+                default -> {
+                    // остальные скалярные поля клиента не нужны
+                }
+            }
+        }
+
+        return new Client(email, expiryTime, up, down, enable);
+    }
+}
@@ -0,0 +1,111 @@
+package com.xraybot.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xraybot.config.XrayProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Какие пороги уведомлений уже отправлены каждому клиенту для его текущего
+ * срока действия. Пороги пересекаются по мере приближения срока, поэтому
+ * достаточно хранить самый «близкий» из уже отправленных. При продлении
+ * ({@code expiryTime} изменился) запись сбрасывается. Ключ — email,
+ * приведённый {@link UserIndex#normalize}, как и в снимке клиентов.
+ */
+@Service
+@DependsOn("replicaCoordinator")
+public class NotificationLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationLedger.class);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final Path path;
+
+    public NotificationLedger(XrayProperties properties) {
+        this.path = properties.getStorage().resolve(properties.getStorage().getNotificationLedger());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            Map<String, Entry> loaded = mapper.readValue(path.toFile(), new TypeReference<Map<String, Entry>>() {
+            });
+            // Старые файлы хранят email как есть; одинаковые после нормализации сливаются
+            loaded.forEach((email, entry) -> merge(UserIndex.normalize(email), entry));
+        } catch (IOException e) {
+            log.error("Ошибка при чтении журнала уведомлений", e);
+        }
+    }
+
+    /**
+     * Нужно ли уведомлять клиента о пересечении порога {@code thresholdDays}
+     * для срока {@code expiryTime}.
+     */
+    public boolean isDue(String email, long expiryTime, int thresholdDays) {
+        Entry entry = entries.get(UserIndex.normalize(email));
+        return entry == null || entry.expiryTime() != expiryTime || thresholdDays < entry.lastThreshold();
+    }
+
+    public void markNotified(String email, long expiryTime, int thresholdDays) {
+        merge(UserIndex.normalize(email), new Entry(expiryTime, thresholdDays));
+        dirty.set(true);
+    }
+
+    // Клиенты, удалённые из панели, больше не нужны
+    public void retainOnly(Set<String> emails) {
+        Set<String> keys = emails.stream().map(UserIndex::normalize).collect(Collectors.toSet());
+        if (entries.keySet().retainAll(keys)) {
+            dirty.set(true);
+        }
+    }
+
+    private void merge(String key, Entry entry) {
+        entries.merge(key, entry, (old, fresh) ->
+                old.expiryTime() == fresh.expiryTime() && old.lastThreshold() <= fresh.lastThreshold() ? old : fresh);
+    }
+
+    @Scheduled(fixedDelay = 30_000)
+    public void flush() {
+        if (!dirty.compareAndSet(true, false)) {
+            return;
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            mapper.writeValue(tmp.toFile(), Map.copyOf(entries));
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("Ошибка при сохранении журнала уведомлений", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public record Entry(long expiryTime, int lastThreshold) {
+    }
+}
@@ -0,0 +1,198 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Предохранитель вызовов панели 3X-UI. Считает долю ошибок среди последних
+ * вызовов и при превышении порога размыкает цепь: следующие вызовы сразу
+ * получают {@link PanelUnavailableException}, не дожидаясь таймаутов. Через
+ * {@code openDuration} пропускается один пробный вызов — по его итогу цепь
+ * замыкается или снова размыкается. Семафор ограничивает число одновременных
+ * вызовов, чтобы медленная панель не собирала очередь потоков. У каждой
+ * панели свой предохранитель.
+ */
+public class PanelCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(PanelCircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String panelName;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final long maxWaitNanos;
+    private final Semaphore bulkhead;
+    private final MeterRegistry meterRegistry;
+
+    // Кольцо исходов последних вызовов: true — ошибка
+    private final boolean[] window;
+    private int windowNext;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public PanelCircuitBreaker(String panelName, XrayProperties.Circuit circuit, MeterRegistry meterRegistry) {
+        this.panelName = panelName;
+        this.failureRateThreshold = circuit.getFailureRateThreshold();
+        this.minimumCalls = Math.max(1, circuit.getMinimumCalls());
+        this.openDurationNanos = circuit.getOpenDuration().toNanos();
+        this.maxWaitNanos = circuit.getMaxWait().toNanos();
+        this.bulkhead = new Semaphore(Math.max(1, circuit.getMaxConcurrentCalls()));
+        this.window = new boolean[Math.max(minimumCalls, circuit.getSlidingWindowSize())];
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Регистрируется владельцем уже построенного предохранителя, а не из конструктора
+    void registerStateGauge() {
+        Gauge.builder("xray.panel.circuit.state", this, breaker -> breaker.state().ordinal())
+                .description("0 — замкнута, 1 — разомкнута, 2 — пробный вызов")
+                .tag("panel", panelName)
+                .register(meterRegistry);
+    }
+
+    public <T> T execute(Call<T> call) throws Exception {
+        // Разомкнутая цепь отказывает сразу, не занимая и не дожидаясь места в семафоре
+        if (!acquirePermission()) {
+            reject("open");
+            throw new PanelUnavailableException("Панель " + panelName + " недоступна, запросы временно не выполняются");
+        }
+        boolean acquired = false;
+        try {
+            acquired = bulkhead.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } finally {
+            if (!acquired) {
+                releasePermission();
+            }
+        }
+        if (!acquired) {
+            reject("bulkhead");
+            throw new PanelUnavailableException("Слишком много одновременных запросов к панели " + panelName);
+        }
+        try {
+            T result;
+            try {
+                result = call.execute();
+            } catch (Exception e) {
+                onResult(true);
+                throw e;
+            }
+            onResult(false);
+            return result;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public boolean isOpen() {
+        return state() != State.CLOSED;
+    }
+
+    private synchronized boolean acquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openDurationNanos) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                probeInFlight = true;
+                return true;
+            default:
+                // Пока идёт пробный вызов, остальные получают отказ
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    // Разрешение выдано, но вызов не состоялся: пробный вызов уступает место следующему
+    private synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    private synchronized void onResult(boolean failed) {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            if (failed) {
+                open();
+            } else {
+                resetWindow();
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // Вызов начался до размыкания — на решение уже не влияет
+            return;
+        }
+
+        if (windowCount == window.length) {
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % window.length;
+
+        if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        resetWindow();
+        transition(State.OPEN);
+    }
+
+    private void resetWindow() {
+        windowNext = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    private void transition(State next) {
+        if (state != next) {
+            log.warn("Предохранитель панели {}: {} → {}", panelName, state, next);
+            state = next;
+        }
+    }
+
+    private void reject(String reason) {
+        meterRegistry.counter("xray.panel.circuit.rejected", "panel", panelName, "reason", reason).increment();
+    }
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T execute() throws Exception;
+    }
+}
@@ -0,0 +1,272 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.XrayApiService.Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Все настроенные панели 3X-UI. У каждой свои {@link XrayApiService}, сессия,
+ * пул соединений, предохранитель и период опроса; панели опрашиваются
+ * независимо, так что медленный узел не задерживает остальные. Последние
+ * клиенты каждой панели хранятся отдельно и сводятся в общий вид по email.
+ * Свежесть данных тоже своя у каждой панели: по запросу перечитываются только
+ * устаревшие, а панель с разомкнутым предохранителем — не чаще, чем позволяет
+ * растущая задержка после неудачных опросов.
+ * <p>
+ * Сброс счётчиков трафика в одной панели не виден в сумме по панелям, поэтому
+ * приросты считаются по каждой панели до сведения: у каждой панели свои
+ * накопленные счётчики, которые при сбросе продолжают расти с нового значения.
+ */
+@Service
+public class PanelFederation {
+
+    private static final Logger log = LoggerFactory.getLogger(PanelFederation.class);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(5);
+
+    private final List<Member> members = new ArrayList<>();
+    // По потоку на панель, чтобы опрос медленной не сдвигал расписание остальных
+    private final ScheduledExecutorService pollers;
+    private final ExecutorService refreshers = Executors.newVirtualThreadPerTaskExecutor();
+
+    public PanelFederation(XrayProperties properties, MeterRegistry meterRegistry) {
+        Set<String> names = new HashSet<>();
+        for (XrayProperties.Panel panel : properties.effectivePanels()) {
+            if (panel.getName() == null || panel.getName().isBlank()) {
+                panel.setName("panel-" + members.size());
+            }
+            if (!names.add(panel.getName())) {
+                throw new IllegalStateException("Имя панели повторяется: " + panel.getName());
+            }
+            HttpClientPanelTransport transport = new HttpClientPanelTransport(properties.getHttp());
+            PanelCircuitBreaker breaker = new PanelCircuitBreaker(panel.getName(), properties.getCircuit(), meterRegistry);
+            breaker.registerStateGauge();
+            XrayApiService api = new XrayApiService(panel, transport,
+                    new PanelSession(transport, panel, meterRegistry), breaker, meterRegistry);
+            Duration interval = panel.getRefreshInterval() != null
+                    ? panel.getRefreshInterval()
+                    : properties.getCache().getRefreshInterval();
+            members.add(new Member(api, breaker, interval));
+        }
+        this.pollers = Executors.newScheduledThreadPool(members.size(),
+                Thread.ofVirtual().name("panel-poll-", 0).factory());
+        log.info("Панелей 3X-UI: {}", members.size());
+    }
+
+    /**
+     * Запускает опрос каждой панели по её расписанию; после удачного опроса
+     * вызывается {@code onUpdate}.
+     */
+    public void startPolling(Runnable onUpdate) {
+        for (Member member : members) {
+            long period = member.interval().toMillis();
+            pollers.scheduleWithFixedDelay(() -> {
+                if (member.poll()) {
+                    onUpdate.run();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Опрашивает все панели одновременно и ждёт их. Неудачный опрос оставляет
+     * прежние данные панели.
+     */
+    public void pollAll() {
+        poll(members);
+    }
+
+    /**
+     * Опрашивает только панели, чьи данные старше {@code ttl}, кроме тех,
+     * что ждут повтора после неудачи при разомкнутом предохранителе.
+     */
+    public void pollStale(Duration ttl) {
+        Instant now = Instant.now();
+        poll(members.stream().filter(member -> member.needsPoll(ttl, now)).toList());
+    }
+
+    /**
+     * Есть ли панель, которую {@link #pollStale} стал бы опрашивать.
+     */
+    public boolean needsRefresh(Duration ttl) {
+        Instant now = Instant.now();
+        for (Member member : members) {
+            if (member.needsPoll(ttl, now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void poll(List<Member> due) {
+        CompletableFuture<?>[] polls = new CompletableFuture<?>[due.size()];
+        for (int i = 0; i < due.size(); i++) {
+            polls[i] = CompletableFuture.runAsync(due.get(i)::poll, refreshers);
+        }
+        CompletableFuture.allOf(polls).join();
+    }
+
+    /**
+     * Сводка последних данных всех панелей без обращения к сети. Исключение —
+     * только если данных нет ни по одной панели.
+     */
+    public View view() throws Exception {
+        Map<String, Client> merged = new HashMap<>();
+        Map<String, Traffic> traffic = new HashMap<>();
+        Instant oldest = null;
+        Exception failure = null;
+        for (Member member : members) {
+            PanelData data = member.data;
+            if (data == null) {
+                failure = member.lastError;
+                continue;
+            }
+            for (Client client : data.clients()) {
+                // Ключ нормализован так же, как username в UserRegistry
+                merged.merge(UserIndex.normalize(client.email()), client, Client::merged);
+            }
+            data.counters().forEach((key, counters) -> traffic.merge(key, counters.total(), Traffic::plus));
+            if (oldest == null || data.loadedAt().isBefore(oldest)) {
+                oldest = data.loadedAt();
+            }
+        }
+        if (oldest == null) {
+            throw failure != null ? failure : new PanelUnavailableException("Нет данных ни от одной панели");
+        }
+        return new View(merged, oldest, traffic);
+    }
+
+    public List<XrayApiService> panels() {
+        return members.stream().map(Member::api).toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pollers.shutdownNow();
+        refreshers.shutdownNow();
+        for (Member member : members) {
+            member.api().close();
+        }
+    }
+
+    /**
+     * {@code loadedAt} — время самых старых данных среди панелей: насколько
+     * устаревшими могут быть показанные клиенту данные. {@code traffic} —
+     * накопленные счётчики по тем же ключам, что и {@code clients}.
+     */
+    public record View(Map<String, Client> clients, Instant loadedAt, Map<String, Traffic> traffic) {
+    }
+
+    /**
+     * Счётчики трафика клиента, которые не уменьшаются при сбросе в панели.
+     * Отсчитываются от первого опроса после старта бота.
+     */
+    public record Traffic(long up, long down) {
+
+        Traffic plus(Traffic other) {
+            return new Traffic(up + other.up, down + other.down);
+        }
+    }
+
+    // Последние значения счётчиков панели и накопленные по ним итоги
+    private record Counters(long up, long down, Traffic total) {
+
+        Counters next(long nextUp, long nextDown) {
+            // Счётчик меньше прежнего сброшен в панели: весь новый объём — прирост
+            long upDelta = nextUp >= up ? nextUp - up : nextUp;
+            long downDelta = nextDown >= down ? nextDown - down : nextDown;
+            return new Counters(nextUp, nextDown, total.plus(new Traffic(upDelta, downDelta)));
+        }
+    }
+
+    private record PanelData(List<Client> clients, Instant loadedAt, Map<String, Counters> counters) {
+    }
+
+    private static final class Member {
+        private final XrayApiService api;
+        private final PanelCircuitBreaker breaker;
+        private final Duration interval;
+        private volatile PanelData data;
+        private volatile Exception lastError;
+        // Неудачные опросы подряд и момент, раньше которого опрос по запросу не нужен
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile Instant retryAt = Instant.EPOCH;
+
+        Member(XrayApiService api, PanelCircuitBreaker breaker, Duration interval) {
+            this.api = api;
+            this.breaker = breaker;
+            this.interval = interval;
+        }
+
+        XrayApiService api() {
+            return api;
+        }
+
+        Duration interval() {
+            return interval;
+        }
+
+        // Плановый опрос и опрос по запросу могут завершиться одновременно — счётчики сдвигаются по очереди
+        private synchronized void update(List<Client> clients) {
+            Map<String, Traffic> current = new HashMap<>(clients.size());
+            for (Client client : clients) {
+                current.merge(UserIndex.normalize(client.email()), new Traffic(client.up(), client.down()), Traffic::plus);
+            }
+            PanelData previous = data;
+            Map<String, Counters> counters = new HashMap<>(current.size());
+            current.forEach((key, traffic) -> {
+                Counters was = previous != null ? previous.counters().get(key) : null;
+                counters.put(key, was != null
+                        ? was.next(traffic.up(), traffic.down())
+                        : new Counters(traffic.up(), traffic.down(), traffic));
+            });
+            data = new PanelData(clients, Instant.now(), counters);
+        }
+
+        boolean needsPoll(Duration ttl, Instant now) {
+            PanelData current = data;
+            if (current != null && !current.loadedAt().plus(ttl).isBefore(now)) {
+                return false;
+            }
+            // Пока предохранитель разомкнут, опрос всё равно получит отказ — ждём повтора
+            return !breaker.isOpen() || !now.isBefore(retryAt);
+        }
+
+        boolean poll() {
+            try {
+                List<Client> clients = api.getAllClients();
+                update(clients);
+                lastError = null;
+                failures.set(0);
+                retryAt = Instant.EPOCH;
+                return true;
+            } catch (Exception e) {
+                lastError = e;
+                // interval, 2·interval, 4·interval… но не дольше MAX_BACKOFF
+                int failed = Math.min(failures.incrementAndGet(), 16);
+                Duration backoff = interval.multipliedBy(1L << (failed - 1));
+                retryAt = Instant.now().plus(backoff.compareTo(MAX_BACKOFF) < 0 ? backoff : MAX_BACKOFF);
+                log.warn("Не удалось опросить панель {}: {}", api.name(), e.getMessage());
+                return false;
+            }
+        }
+    }
+}
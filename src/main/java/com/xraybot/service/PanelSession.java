@@ -0,0 +1,146 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.PanelTransport.PanelResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.HttpCookie;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Сессия панели 3X-UI. Cookie используется без предварительной проверки;
+ * повторный вход выполняется только когда панель отклонила запрос или
+ * cookie вот-вот истечёт. Одновременные вызовы ждут один общий вход.
+ * У каждой панели своя сессия.
+ */
+public class PanelSession {
+
+    private static final Logger log = LoggerFactory.getLogger(PanelSession.class);
+    private static final String COOKIE_NAME = "3x-ui";
+    // Обновляем cookie заранее, чтобы не ловить отказ на середине операции
+    private static final Duration EXPIRY_SKEW = Duration.ofMinutes(1);
+
+    private final PanelTransport transport;
+    private final XrayProperties.Panel panel;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicReference<SessionCookie> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<SessionCookie>> inFlight = new AtomicReference<>();
+
+    public PanelSession(PanelTransport transport, XrayProperties.Panel panel, MeterRegistry meterRegistry) {
+        this.transport = transport;
+        this.panel = panel;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public String cookie() throws Exception {
+        SessionCookie cookie = current.get();
+        if (cookie != null && !cookie.expiresWithin(EXPIRY_SKEW)) {
+            return cookie.header();
+        }
+        return login().header();
+    }
+
+    public void invalidate(String rejectedCookie) {
+        SessionCookie cookie = current.get();
+        if (cookie != null && cookie.header().equals(rejectedCookie) && current.compareAndSet(cookie, null)) {
+            log.info("Сессия панели {} недействительна — выполняем повторный вход...", panel.getName());
+        }
+    }
+
+    private SessionCookie login() throws Exception {
+        CompletableFuture<SessionCookie> mine = new CompletableFuture<>();
+        CompletableFuture<SessionCookie> running = inFlight.compareAndExchange(null, mine);
+        if (running != null) {
+            return await(running);
+        }
+        // Другой вход мог завершиться между проверкой в cookie() и захватом inFlight — второй раз не входим
+        SessionCookie fresh = current.get();
+        if (fresh != null && !fresh.expiresWithin(EXPIRY_SKEW)) {
+            mine.complete(fresh);
+            inFlight.set(null);
+            return fresh;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            SessionCookie cookie = doLogin();
+            current.set(cookie);
+            mine.complete(cookie);
+            outcome = "success";
+            return cookie;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.set(null);
+            sample.stop(meterRegistry.timer("xray.panel.requests",
+                    "panel", panel.getName(), "operation", "login", "outcome", outcome));
+        }
+    }
+
+    private SessionCookie await(CompletableFuture<SessionCookie> running) throws Exception {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private SessionCookie doLogin() throws Exception {
+        String url = panel.getBaseUrl() + "/login";
+
+        String body = "username=" + URLEncoder.encode(panel.getUsername(), StandardCharsets.UTF_8) +
+                "&password=" + URLEncoder.encode(panel.getPassword(), StandardCharsets.UTF_8);
+
+        PanelResponse response = transport.postForm(url, body);
+        if (!response.is2xx()) {
+            throw new Exception("Не удалось авторизоваться в 3X-UI: статус " + response.status());
+        }
+
+        List<String> cookies = response.setCookies();
+        if (cookies.isEmpty()) {
+            throw new Exception("Не удалось авторизоваться в 3X-UI: нет заголовка Set-Cookie");
+        }
+
+        for (String rawCookie : cookies) {
+            try {
+                for (HttpCookie cookie : HttpCookie.parse(rawCookie)) {
+                    if (COOKIE_NAME.equals(cookie.getName())) {
+                        String header = cookie.getName() + "=" + cookie.getValue();
+                        Instant expiresAt = cookie.getMaxAge() > 0
+                                ? Instant.now().plusSeconds(cookie.getMaxAge())
+                                : Instant.MAX;
+                        log.info("Login successful. Session cookie: {}...", header.substring(0, Math.min(25, header.length())));
+                        return new SessionCookie(header, expiresAt);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("Failed to parse cookie: {}", rawCookie, e);
+            }
+        }
+
+        throw new Exception("Не удалось авторизоваться в 3X-UI: cookie '" + COOKIE_NAME + "' не найден");
+    }
+
+    private record SessionCookie(String header, Instant expiresAt) {
+
+        boolean expiresWithin(Duration skew) {
+            return expiresAt != Instant.MAX && Instant.now().plus(skew).isAfter(expiresAt);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.xraybot.service;
+
+import java.util.List;
+
+/**
+ * HTTP-транспорт до панели 3X-UI. Редиректы не выполняются — вызывающий сам
+ * решает, что ответ 3xx означает истёкшую сессию.
+ */
+public interface PanelTransport extends AutoCloseable {
+
+    PanelResponse get(String url, String cookie) throws Exception;
+
+    PanelResponse postForm(String url, String form) throws Exception;
+
+    // Освобождает соединения транспорта; закрытие не бросает проверяемых исключений
+    @Override
+    default void close() {
+    }
+
+    record PanelResponse(int status, String body, List<String> setCookies) {
+
+        public boolean is2xx() {
+            return status >= 200 && status < 300;
+        }
+
+        public boolean isSessionRejected() {
+            return status == 401 || (status >= 300 && status < 400);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.xraybot.service;
+
+/**
+ * Вызов панели не выполнялся: цепь разомкнута после серии ошибок
+ * или все разрешённые одновременные вызовы заняты.
+ */
+public class PanelUnavailableException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public PanelUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,393 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Временные ряды трафика клиентов в отображённом в память файле.
+ * <p>
+ * Панель отдаёт накопительные счётчики {@code up}/{@code down}; здесь хранятся
+ * только приросты между опросами в килобайтах: почасовое кольцо на неделю и
+ * посуточное на год (часы прореживаются в сутки при записи). У каждого клиента
+ * запись фиксированного размера, поэтому чтение статистики — это обход
+ * нескольких сотен {@code int} без обращения к панели.
+ * <p>
+ * Приросты приходят из {@link ClientDelta}, где они посчитаны по каждой панели
+ * до сведения; база последнего замера нужна, чтобы после перезапуска учесть
+ * трафик за время простоя. Сброс счётчика в панели определяется по каждому
+ * счётчику отдельно. Остаток прироста меньше килобайта не теряется: он
+ * хранится в записи и войдёт в следующий прирост. Записи
+ * удалённых из панелей клиентов освобождаются, а на их место переносится
+ * последняя запись, так что файл не растёт больше числа клиентов.
+ */
+@Service
+@DependsOn("replicaCoordinator")
+public class TrafficStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficStore.class);
+
+    private static final int MAGIC = 0x58524254;
+    // Версия 2: остатки меньше килобайта хранятся в хвосте поля email
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 256;
+
+    static final int HOURS = 24 * 7;
+    static final int DAYS = 366;
+    // Статистика показывается за 30 дней — запись, не обновлявшаяся дольше, уже ничего не показывает
+    private static final long IDLE_RECLAIM_SECONDS = 31L * 86400;
+
+    // Раскладка записи клиента
+    private static final int EMAIL_BYTES = 96;
+    private static final int REMAINDER_UP = EMAIL_BYTES - 4;
+    private static final int REMAINDER_DOWN = EMAIL_BYTES - 2;
+    // Длина email в байтах после байта длины и до остатков
+    private static final int EMAIL_MAX = REMAINDER_UP - 1;
+    private static final int LAST_UP = EMAIL_BYTES;
+    private static final int LAST_DOWN = LAST_UP + 8;
+    private static final int LAST_SAMPLE_AT = LAST_DOWN + 8;
+    private static final int RATE = LAST_SAMPLE_AT + 8;
+    private static final int CURRENT_HOUR = RATE + 8;
+    private static final int CURRENT_DAY = CURRENT_HOUR + 8;
+    private static final int HOURLY = CURRENT_DAY + 8;
+    private static final int DAILY = HOURLY + HOURS * 8;
+    private static final int RECORD_SIZE = DAILY + DAYS * 8;
+
+    private final Path path;
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+
+    @Autowired
+    public TrafficStore(XrayProperties properties) {
+        this(properties.getStorage().resolve(properties.getStorage().getTraffic()));
+    }
+
+    TrafficStore(Path path) {
+        this.path = path;
+    }
+
+    @PostConstruct
+    public synchronized void init() throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (channel.size() >= HEADER_SIZE) {
+            map(Math.max(1, (int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE)));
+            int version = buffer.getInt(4);
+            if (buffer.getInt(0) == MAGIC && (version == VERSION || version == 1)) {
+                capacity = buffer.getInt(8);
+                count = buffer.getInt(12);
+                map(capacity);
+                for (int slot = 0; slot < count; slot++) {
+                    slots.put(readEmail(slot), slot);
+                }
+                if (version == 1) {
+                    upgradeFromVersion1();
+                }
+                log.info("Загружена статистика трафика: {} клиентов", count);
+                return;
+            }
+            log.warn("Файл {} не распознан — статистика трафика начинается заново", path);
+        }
+
+        map(INITIAL_CAPACITY);
+        capacity = INITIAL_CAPACITY;
+        count = 0;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        writeHeader();
+    }
+
+    @EventListener
+    public void onClientDelta(ClientDelta delta) {
+        long at = delta.polledAt().getEpochSecond();
+        if (delta.initial()) {
+            // Клиенты, удалённые, пока бот не работал: их записи давно не обновлялись
+            Set<String> present = new HashSet<>();
+            delta.changes().forEach(change -> present.add(UserIndex.normalize(change.email())));
+            reclaimIdle(present, at);
+        }
+        for (ClientChange change : delta.changes()) {
+            switch (change) {
+                case ClientChange.Added added -> record(added.client().email(), added.client().up(), added.client().down(), at);
+                case ClientChange.TrafficIncreased traffic ->
+                        record(traffic.email(), traffic.up(), traffic.down(), traffic.upDelta(), traffic.downDelta(), at);
+                case ClientChange.Removed removed -> release(removed.email());
+                default -> {
+                    // на трафик не влияет
+                }
+            }
+        }
+    }
+
+    /**
+     * Принимает накопительные счётчики клиента на момент {@code at} (epoch seconds),
+     * прирост считается от базы прошлого замера. Первый замер только запоминает
+     * базу; уменьшение счётчика считается его сбросом в панели.
+     */
+    public synchronized void record(String email, long up, long down, long at) {
+        Integer slot = slot(email, up, down, at);
+        if (slot != null) {
+            int base = offset(slot);
+            sample(base, up, down, up - buffer.getLong(base + LAST_UP), down - buffer.getLong(base + LAST_DOWN), at);
+        }
+    }
+
+    /**
+     * То же с уже посчитанным приростом; отрицательный прирост счётчика
+     * означает его сброс в панели.
+     */
+    public synchronized void record(String email, long up, long down, long upDelta, long downDelta, long at) {
+        Integer slot = slot(email, up, down, at);
+        if (slot != null) {
+            sample(offset(slot), up, down, upDelta, downDelta, at);
+        }
+    }
+
+    // Запись клиента; null — клиент не хранится или это его первый замер, который только задал базу
+    private Integer slot(String email, long up, long down, long at) {
+        String key = UserIndex.normalize(email);
+        if (key.isEmpty() || key.getBytes(StandardCharsets.UTF_8).length > EMAIL_MAX) {
+            return null;
+        }
+
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+        int base = offset(allocate(key));
+        buffer.putLong(base + LAST_UP, up);
+        buffer.putLong(base + LAST_DOWN, down);
+        buffer.putLong(base + LAST_SAMPLE_AT, at);
+        buffer.putLong(base + CURRENT_HOUR, at / 3600);
+        buffer.putLong(base + CURRENT_DAY, at / 86400);
+        return null;
+    }
+
+    private void sample(int base, long up, long down, long upDelta, long downDelta, long at) {
+        // Каждый счётчик сбрасывается в панели независимо: после сброса прирост — всё новое значение
+        if (upDelta < 0) {
+            upDelta = up;
+        }
+        if (downDelta < 0) {
+            downDelta = down;
+        }
+
+        long lastAt = buffer.getLong(base + LAST_SAMPLE_AT);
+        if (at > lastAt) {
+            buffer.putLong(base + RATE, (upDelta + downDelta) / (at - lastAt));
+        }
+        // Ячейки считают целые килобайты; остаток хранится и войдёт в следующий прирост
+        upDelta += buffer.getShort(base + REMAINDER_UP);
+        downDelta += buffer.getShort(base + REMAINDER_DOWN);
+        buffer.putShort(base + REMAINDER_UP, (short) (upDelta % 1024));
+        buffer.putShort(base + REMAINDER_DOWN, (short) (downDelta % 1024));
+        buffer.putLong(base + LAST_UP, up);
+        buffer.putLong(base + LAST_DOWN, down);
+        buffer.putLong(base + LAST_SAMPLE_AT, at);
+
+        int hourSlot = advance(base, CURRENT_HOUR, HOURLY, HOURS, at / 3600);
+        add(base + HOURLY + hourSlot * 8, upDelta / 1024, downDelta / 1024);
+        int daySlot = advance(base, CURRENT_DAY, DAILY, DAYS, at / 86400);
+        add(base + DAILY + daySlot * 8, upDelta / 1024, downDelta / 1024);
+    }
+
+    // Освобождает запись клиента, удалённого из панели
+    public synchronized void release(String email) {
+        Integer slot = slots.remove(UserIndex.normalize(email));
+        if (slot == null) {
+            return;
+        }
+        int last = --count;
+        if (slot != last) {
+            // На место освобождённой записи переезжает последняя — записи остаются плотными
+            buffer.put(offset(slot), buffer, offset(last), RECORD_SIZE);
+            slots.put(readEmail(slot), slot);
+        }
+        writeHeader();
+    }
+
+    // В версии 1 остатки входили в базу, а email мог занимать хвост поля: такие записи не переносятся
+    private void upgradeFromVersion1() {
+        for (String key : Set.copyOf(slots.keySet())) {
+            if (key.getBytes(StandardCharsets.UTF_8).length > EMAIL_MAX) {
+                release(key);
+            }
+        }
+        buffer.putInt(4, VERSION);
+        log.info("Файл {} переведён на версию {}", path, VERSION);
+    }
+
+    // Освобождает записи клиентов не из present, не обновлявшиеся дольше месяца
+    synchronized void reclaimIdle(Set<String> present, long now) {
+        int before = count;
+        for (String key : Set.copyOf(slots.keySet())) {
+            if (!present.contains(key) && now - buffer.getLong(offset(slots.get(key)) + LAST_SAMPLE_AT) > IDLE_RECLAIM_SECONDS) {
+                release(key);
+            }
+        }
+        if (count < before) {
+            log.info("Освобождены записи трафика {} удалённых клиентов", before - count);
+        }
+    }
+
+    synchronized int clients() {
+        return count;
+    }
+
+    /**
+     * Трафик клиента за последний час, сутки и 30 дней плюс текущая скорость.
+     * {@code staleAfter} — сколько секунд без прироста скорость считается нулевой.
+     */
+    public synchronized Usage usage(String email, Instant now, long staleAfter) {
+        Integer slot = slots.get(UserIndex.normalize(email));
+        if (slot == null) {
+            return null;
+        }
+        int base = offset(slot);
+        long nowSeconds = now.getEpochSecond();
+        long hour = nowSeconds / 3600;
+        long day = nowSeconds / 86400;
+
+        long[] lastHour = sum(base, CURRENT_HOUR, HOURLY, HOURS, hour, 1);
+        long[] lastDay = sum(base, CURRENT_HOUR, HOURLY, HOURS, hour, 24);
+        long[] lastMonth = sum(base, CURRENT_DAY, DAILY, DAYS, day, 30);
+
+        long lastSampleAt = buffer.getLong(base + LAST_SAMPLE_AT);
+        long rate = nowSeconds - lastSampleAt <= staleAfter ? buffer.getLong(base + RATE) : 0;
+
+        return new Usage(lastHour[0], lastHour[1], lastDay[0], lastDay[1], lastMonth[0], lastMonth[1], rate);
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public synchronized void flush() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    // Сдвигает кольцо до bucket, обнуляя пропущенные ячейки; возвращает индекс ячейки bucket
+    private int advance(int base, int currentField, int ring, int size, long bucket) {
+        long current = buffer.getLong(base + currentField);
+        if (bucket > current) {
+            long gap = Math.min(bucket - current, size);
+            for (long b = bucket - gap + 1; b <= bucket; b++) {
+                int cell = base + ring + (int) (b % size) * 8;
+                buffer.putInt(cell, 0);
+                buffer.putInt(cell + 4, 0);
+            }
+            buffer.putLong(base + currentField, bucket);
+            return (int) (bucket % size);
+        }
+        // Замер из прошлого (часы сервера сдвинулись назад) — пишем в текущую ячейку
+        return (int) (current % size);
+    }
+
+    // Сумма за buckets последних ячеек до bucket включительно, в байтах: {up, down}
+    private long[] sum(int base, int currentField, int ring, int size, long bucket, int buckets) {
+        long current = buffer.getLong(base + currentField);
+        long up = 0;
+        long down = 0;
+        for (long b = bucket - buckets + 1; b <= bucket; b++) {
+            if (b > current || b <= current - size) {
+                continue;
+            }
+            int cell = base + ring + (int) (b % size) * 8;
+            up += Integer.toUnsignedLong(buffer.getInt(cell));
+            down += Integer.toUnsignedLong(buffer.getInt(cell + 4));
+        }
+        return new long[]{up * 1024, down * 1024};
+    }
+
+    // Ячейки хранят килобайты в беззнаковом int — до 4 ТиБ за ячейку
+    private void add(int cell, long upKib, long downKib) {
+        buffer.putInt(cell, saturatedAdd(buffer.getInt(cell), upKib));
+        buffer.putInt(cell + 4, saturatedAdd(buffer.getInt(cell + 4), downKib));
+    }
+
+    private static int saturatedAdd(int cell, long kib) {
+        return (int) Math.min(Integer.toUnsignedLong(cell) + kib, 0xFFFF_FFFFL);
+    }
+
+    private int allocate(String key) {
+        if (count == capacity) {
+            try {
+                map(capacity * 2);
+                capacity *= 2;
+            } catch (IOException e) {
+                throw new IllegalStateException("Не удалось расширить " + path, e);
+            }
+        }
+        int slot = count++;
+        int base = offset(slot);
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            buffer.putLong(base + i, 0);
+        }
+        byte[] email = key.getBytes(StandardCharsets.UTF_8);
+        buffer.put(base, (byte) email.length);
+        buffer.put(base + 1, email);
+        slots.put(key, slot);
+        writeHeader();
+        return slot;
+    }
+
+    private String readEmail(int slot) {
+        int base = offset(slot);
+        byte[] email = new byte[buffer.get(base)];
+        buffer.get(base + 1, email);
+        return new String(email, StandardCharsets.UTF_8);
+    }
+
+    private void map(int records) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) records * RECORD_SIZE);
+    }
+
+    private void writeHeader() {
+        buffer.putInt(8, capacity);
+        buffer.putInt(12, count);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    public record Usage(long hourUp, long hourDown,
+                        long dayUp, long dayDown,
+                        long monthUp, long monthDown,
+                        long bytesPerSecond) {
+    }
+}
@@ -0,0 +1,232 @@
+package com.xraybot.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Двусторонний индекс {@code username ↔ chatId} на открытой адресации.
+ * Имена хранятся нормализованными (без {@code @}, в нижнем регистре), chatId —
+ * примитивными {@code long}, так что поиск не упаковывает значения в {@link Long}.
+ * У одного чата может быть несколько имён — например, после смены username.
+ */
+public class UserIndex {
+
+    public static final long NO_CHAT = Long.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final String[] NO_NAMES = new String[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // username → chatId
+    private String[] names = new String[INITIAL_CAPACITY];
+    private long[] chatIds = new long[INITIAL_CAPACITY];
+    private int nameCount;
+
+    // chatId → все username этого чата; пустой слот — null в chatNames
+    private long[] chats = new long[INITIAL_CAPACITY];
+    private String[][] chatNames = new String[INITIAL_CAPACITY][];
+    private int chatCount;
+
+    public static String normalize(String username) {
+        if (username == null) {
+            return "";
+        }
+        String trimmed = username.strip();
+        if (trimmed.startsWith("@")) {
+            trimmed = trimmed.substring(1);
+        }
+        return trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Привязывает имя к чату. Возвращает {@code true}, если индекс изменился.
+     */
+    public boolean put(String username, long chatId) {
+        String key = normalize(username);
+        if (key.isEmpty()) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            int slot = nameSlot(names, key);
+            if (names[slot] != null) {
+                long previous = chatIds[slot];
+                if (previous == chatId) {
+                    return false;
+                }
+                removeChatName(previous, key);
+                chatIds[slot] = chatId;
+            } else {
+                names[slot] = key;
+                chatIds[slot] = chatId;
+                if (++nameCount * 2 > names.length) {
+                    growNames();
+                }
+            }
+            addChatName(chatId, key);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long get(String username) {
+        String key = normalize(username);
+        lock.readLock().lock();
+        try {
+            int slot = nameSlot(names, key);
+            return names[slot] != null ? chatIds[slot] : NO_CHAT;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * chatId для каждого имени в порядке обхода коллекции; {@link #NO_CHAT} — если имя не найдено.
+     * Весь проход идёт под одной блокировкой чтения.
+     */
+    public long[] lookupAll(Collection<String> usernames) {
+        long[] result = new long[usernames.size()];
+        lock.readLock().lock();
+        try {
+            int i = 0;
+            for (String username : usernames) {
+                int slot = nameSlot(names, normalize(username));
+                result[i++] = names[slot] != null ? chatIds[slot] : NO_CHAT;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public List<String> usernamesOf(long chatId) {
+        lock.readLock().lock();
+        try {
+            int slot = chatSlot(chats, chatNames, chatId);
+            return chatNames[slot] != null ? List.of(chatNames[slot]) : List.of();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nameCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Long> toMap() {
+        lock.readLock().lock();
+        try {
+            Map<String, Long> map = new HashMap<>(nameCount * 2);
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] != null) {
+                    map.put(names[i], chatIds[i]);
+                }
+            }
+            return map;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addChatName(long chatId, String key) {
+        int slot = chatSlot(chats, chatNames, chatId);
+        if (chatNames[slot] == null) {
+            chats[slot] = chatId;
+            chatNames[slot] = new String[]{key};
+            if (++chatCount * 2 > chats.length) {
+                growChats();
+            }
+            return;
+        }
+        String[] current = chatNames[slot];
+        String[] extended = Arrays.copyOf(current, current.length + 1);
+        extended[current.length] = key;
+        chatNames[slot] = extended;
+    }
+
+    // Слот чата не освобождается даже без имён: так не нужна перестановка цепочки проб
+    private void removeChatName(long chatId, String key) {
+        int slot = chatSlot(chats, chatNames, chatId);
+        String[] current = chatNames[slot];
+        if (current == null) {
+            return;
+        }
+        int at = Arrays.asList(current).indexOf(key);
+        if (at < 0) {
+            return;
+        }
+        if (current.length == 1) {
+            chatNames[slot] = NO_NAMES;
+            return;
+        }
+        String[] reduced = new String[current.length - 1];
+        System.arraycopy(current, 0, reduced, 0, at);
+        System.arraycopy(current, at + 1, reduced, at, current.length - at - 1);
+        chatNames[slot] = reduced;
+    }
+
+    private void growNames() {
+        String[] oldNames = names;
+        long[] oldChatIds = chatIds;
+        names = new String[oldNames.length * 2];
+        chatIds = new long[oldNames.length * 2];
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                int slot = nameSlot(names, oldNames[i]);
+                names[slot] = oldNames[i];
+                chatIds[slot] = oldChatIds[i];
+            }
+        }
+    }
+
+    private void growChats() {
+        long[] oldChats = chats;
+        String[][] oldChatNames = chatNames;
+        chats = new long[oldChats.length * 2];
+        chatNames = new String[oldChats.length * 2][];
+        for (int i = 0; i < oldChats.length; i++) {
+            if (oldChatNames[i] != null) {
+                int slot = chatSlot(chats, chatNames, oldChats[i]);
+                chats[slot] = oldChats[i];
+                chatNames[slot] = oldChatNames[i];
+            }
+        }
+    }
+
+    private static int nameSlot(String[] table, String key) {
+        int mask = table.length - 1;
+        int slot = mix(key.hashCode()) & mask;
+        while (table[slot] != null && !table[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int chatSlot(long[] keys, String[][] values, long chatId) {
+        int mask = keys.length - 1;
+        int slot = mix(Long.hashCode(chatId)) & mask;
+        while (values[slot] != null && keys[slot] != chatId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
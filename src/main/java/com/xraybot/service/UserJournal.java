@@ -0,0 +1,198 @@
+package com.xraybot.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Хранилище регистраций: снимок {@code username → chatId} в JSON плюс журнал
+ * дописываемых строк. Запись идёт в фоновом потоке пачками с одним fsync на
+ * пачку; когда журнал разрастается, он сворачивается в новый снимок, который
+ * пишется во временный файл и атомарно подменяет старый.
+ */
+public class UserJournal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(UserJournal.class);
+    private static final int COMPACT_THRESHOLD = 10_000;
+    private static final long FLUSH_WAIT_MILLIS = 500;
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final ObjectMapper mapper;
+    private final Supplier<Map<String, Long>> state;
+    private final BlockingQueue<Entry> pending = new LinkedBlockingQueue<>();
+
+    private FileChannel journal;
+    private int journalEntries;
+    // Длина журнала без оборванного хвоста (-1 — replay не вызывался);
+    // start() отрезает хвост, чтобы новые строки не склеились с ним
+    private long validLength = -1;
+    private Thread writer;
+    private volatile boolean running;
+
+    public UserJournal(Path snapshotPath, Path journalPath, ObjectMapper mapper, Supplier<Map<String, Long>> state) {
+        this.snapshotPath = snapshotPath;
+        this.journalPath = journalPath;
+        this.mapper = mapper;
+        this.state = state;
+    }
+
+    /**
+     * Снимок плюс все записи журнала поверх него. Строка без перевода строки
+     * в конце файла оборвана падением посреди записи и пропускается целиком:
+     * её число может быть обрезанным, но разбираемым chatId.
+     */
+    public Map<String, Long> replay() throws IOException {
+        Map<String, Long> users = new HashMap<>();
+        if (Files.exists(snapshotPath)) {
+            users.putAll(mapper.readValue(snapshotPath.toFile(), new TypeReference<Map<String, Long>>() {
+            }));
+        }
+
+        if (Files.exists(journalPath)) {
+            byte[] bytes = Files.readAllBytes(journalPath);
+            int end = bytes.length;
+            while (end > 0 && bytes[end - 1] != '\n') {
+                end--;
+            }
+            if (end < bytes.length) {
+                log.warn("Пропущена оборванная последняя строка журнала пользователей ({} байт)", bytes.length - end);
+            }
+            validLength = end;
+            for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    continue;
+                }
+                try {
+                    users.put(line.substring(0, tab), Long.parseLong(line.substring(tab + 1)));
+                    journalEntries++;
+                } catch (NumberFormatException e) {
+                    log.warn("Пропущена повреждённая строка журнала: {}", line);
+                }
+            }
+        }
+        return users;
+    }
+
+    public void start() throws IOException {
+        Files.createDirectories(snapshotPath.toAbsolutePath().getParent());
+        Files.createDirectories(journalPath.toAbsolutePath().getParent());
+        journal = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (validLength >= 0 && journal.size() > validLength) {
+            journal.truncate(validLength);
+            journal.force(true);
+        }
+        running = true;
+        writer = Thread.ofPlatform().name("user-journal").daemon().start(this::run);
+    }
+
+    public void append(String username, long chatId) {
+        pending.add(new Entry(username, chatId));
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                Entry first = pending.poll(FLUSH_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch);
+                write(batch);
+                batch.clear();
+
+                if (journalEntries >= COMPACT_THRESHOLD) {
+                    compact();
+                }
+            } catch (InterruptedException e) {
+                // close() сам допишет остаток очереди
+                return;
+            } catch (IOException e) {
+                log.error("Ошибка записи журнала пользователей", e);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) throws IOException {
+        StringBuilder sb = new StringBuilder(batch.size() * 24);
+        for (Entry entry : batch) {
+            sb.append(entry.username()).append('\t').append(entry.chatId()).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        // Один fsync на всю пачку регистраций
+        journal.force(false);
+        journalEntries += batch.size();
+    }
+
+    private void compact() throws IOException {
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(state.get()));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        // Всё из журнала уже в снимке — начинаем журнал заново
+        journal.truncate(0);
+        journal.force(true);
+        journalEntries = 0;
+        log.info("Журнал пользователей свёрнут в снимок {}", snapshotPath);
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (journal != null) {
+            List<Entry> rest = new ArrayList<>();
+            pending.drainTo(rest);
+            if (!rest.isEmpty()) {
+                write(rest);
+            }
+            // Пустой журнал уже целиком в снимке — переписывать его незачем
+            if (journalEntries > 0) {
+                compact();
+            }
+            journal.close();
+        }
+    }
+
+    private record Entry(String username, long chatId) {
+    }
+}
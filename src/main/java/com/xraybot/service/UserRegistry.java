@@ -1,57 +1,116 @@
 package com.xraybot.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xraybot.config.XrayProperties;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
+@DependsOn("replicaCoordinator")
 public class UserRegistry {
 
-    private static final String FILE_PATH = "user_map.json";
-
     private final ObjectMapper mapper = new ObjectMapper();
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(UserRegistry.class);
 
-    // Потокобезопасная карта для хранения username → chatId
-    private Map<String, Long> userMap = new ConcurrentHashMap<>();
+    // Индекс username ↔ chatId; имена нормализованы, поэтому регистр не важен
+    private final UserIndex index = new UserIndex();
+
+    private final UserJournal journal;
+
+    private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+    // Снимок или журнал не прочитались: регистрации не принимаются, иначе они не попадут на диск
+    private volatile String loadError;
 
+    @Autowired
+    public UserRegistry(XrayProperties properties) {
+        this(properties.getStorage().resolve(properties.getStorage().getUserMap()),
+                properties.getStorage().resolve(properties.getStorage().getUserJournal()));
+    }
+
+    UserRegistry(Path snapshotPath, Path journalPath) {
+        this.journal = new UserJournal(snapshotPath, journalPath, mapper, index::toMap);
+    }
+
+    // Снимок и журнал читаются в фоне: старт приложения их не ждёт, а первые обращения дождутся загрузки
     @PostConstruct
     public void init() {
-        loadFromFile();
+        Thread.ofVirtual().name("user-registry-load").start(this::load);
     }
 
-    public void registerUser(String username, long chatId) {
-        userMap.put(username, chatId);
-        saveToFile();
+    private void load() {
+        long started = System.nanoTime();
+        try {
+            journal.replay().forEach(index::put);
+            journal.start();
+            log.info("Загружено {} пользователей за {} мс", index.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            loadError = e.getMessage();
+            log.error("Не удалось загрузить пользователей — новые регистрации не принимаются до перезапуска", e);
+        } finally {
+            loaded.complete(null);
+        }
     }
 
-    public Long getChatId(String username) {
-        return userMap.get(username);
+    public boolean isLoaded() {
+        return loaded.isDone();
     }
 
-    private synchronized void saveToFile() {
-        try {
-            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(FILE_PATH), userMap);
-        } catch (IOException e) {
-            log.error("Ошибка при отправке сообщения пользователю", e);
+    // Причина неудачной загрузки или null, если пользователи загружены (или ещё загружаются)
+    public String loadError() {
+        return loadError;
+    }
+
+    /**
+     * Регистрирует пользователя; false, если реестр не загрузился и запись
+     * некуда сохранить.
+     */
+    public boolean registerUser(String username, long chatId) {
+        loaded.join();
+        if (loadError != null) {
+            return false;
         }
+        // Повторный /start с тем же chatId ничего не меняет — журнал не трогаем
+        if (index.put(username, chatId)) {
+            journal.append(UserIndex.normalize(username), chatId);
+        }
+        return true;
+    }
+
+    public Long getChatId(String username) {
+        loaded.join();
+        long chatId = index.get(username);
+        return chatId == UserIndex.NO_CHAT ? null : chatId;
+    }
+
+    /**
+     * chatId для каждого имени в порядке обхода; {@link UserIndex#NO_CHAT} для незарегистрированных.
+     */
+    public long[] lookupAll(Collection<String> usernames) {
+        loaded.join();
+        return index.lookupAll(usernames);
+    }
+
+    public List<String> getUsernames(long chatId) {
+        loaded.join();
+        return index.usernamesOf(chatId);
     }
 
-    private synchronized void loadFromFile() {
+    @PreDestroy
+    public void shutdown() {
+        loaded.join();
         try {
-            File file = new File(FILE_PATH);
-            if (file.exists()) {
-                userMap = mapper.readValue(file, new TypeReference<>() {
-                });
-            }
+            journal.close();
         } catch (IOException e) {
-            log.error("Ошибка при чтении файла", e);
+            log.error("Ошибка при сохранении пользователей", e);
         }
     }
 }
@@ -3,126 +3,82 @@ package com.xraybot.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xraybot.config.XrayProperties;
+import com.xraybot.service.PanelTransport.PanelResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.*;
-import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.net.HttpCookie;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-@Service
-public class XrayApiService {
-    private final RestTemplate restTemplate;
+import java.util.Map;
+
+/**
+ * Клиент API одной панели 3X-UI со своими транспортом, сессией и предохранителем.
+ * Экземпляры создаёт {@link PanelFederation} — по одному на панель.
+ */
+public class XrayApiService implements AutoCloseable {
+    private final PanelTransport transport;
     private final ObjectMapper objectMapper;
-    private final XrayProperties xrayProperties;
+    private final InboundListParser listParser;
+    private final XrayProperties.Panel panel;
+    private final PanelSession panelSession;
+    private final PanelCircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
     private static final Logger log = LoggerFactory.getLogger(XrayApiService.class);
 
-    private String sessionCookie;
-
-    public XrayApiService(XrayProperties xrayProperties) {
-        this.restTemplate = new RestTemplate();
+    public XrayApiService(XrayProperties.Panel panel,
+                          PanelTransport transport,
+                          PanelSession panelSession,
+                          PanelCircuitBreaker circuitBreaker,
+                          MeterRegistry meterRegistry) {
+        this.transport = transport;
         this.objectMapper = new ObjectMapper();
-        this.xrayProperties = xrayProperties;
+        this.listParser = new InboundListParser(objectMapper.getFactory());
+        this.panel = panel;
+        this.panelSession = panelSession;
+        this.circuitBreaker = circuitBreaker;
+        this.meterRegistry = meterRegistry;
     }
 
-    public boolean login() throws Exception {
-
-        if (sessionCookie != null) {
-            if (isSessionValid()) {
-                return true;
-            } else {
-                log.info("Сессия недействительна — выполняем повторный вход...");
-                sessionCookie = null;
-            }
-        }
-
-        String url = xrayProperties.getBaseUrl() + "/login";
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-
-        String body = "username=" + xrayProperties.getUsername() +
-                "&password=" + xrayProperties.getPassword();
-
-        HttpEntity<String> entity = new HttpEntity<>(body, headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-
-        List<String> cookies = response.getHeaders().get(HttpHeaders.SET_COOKIE);
-        if (cookies == null || cookies.isEmpty()) {
-            log.warn("Login response does not contain Set-Cookie header");
-            return false;
-        }
-
-        for (String rawCookie : cookies) {
-            try {
-                List<HttpCookie> parsedCookies = HttpCookie.parse(rawCookie);
-                for (HttpCookie cookie : parsedCookies) {
-                    if ("3x-ui".equals(cookie.getName())) {
-                        sessionCookie = cookie.getName() + "=" + cookie.getValue();
-                        log.info("Login successful. Session cookie: {}...", sessionCookie.substring(0, Math.min(25, sessionCookie.length())));
-                        return true;
-                    }
-                }
-            } catch (IllegalArgumentException e) {
-                log.warn("Failed to parse cookie: {}", rawCookie, e);
-            }
-        }
-
-        log.warn("Session cookie '3x-ui' not found after login");
-        return false;
+    public List<Client> getAllClients() throws Exception {
+        return timed("getAllClients", this::fetchAllClients);
     }
 
-    public List<Client> getClients(int inboundId) throws Exception {
-        if (sessionCookie == null) {
-            throw new IllegalStateException("Not logged in");
-        }
-
-        String url = xrayProperties.getBaseUrl() + "/panel/api/inbounds/get/" + inboundId;
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.COOKIE, sessionCookie);
-
-        HttpEntity<Void> entity = new HttpEntity<>(headers);
-
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-
-        if (!response.getStatusCode().is2xxSuccessful()) {
-            throw new Exception("Failed to get clients, status: " + response.getStatusCode().value());
-        }
-
-        JsonNode root = objectMapper.readTree(response.getBody());
-        boolean success = root.path("success").asBoolean(false);
-        if (!success) {
+    private List<Client> fetchAllClients() throws Exception {
+        String body = getBody("/panel/api/inbounds/list");
+        if (!listParser.isSuccess(body)) {
             throw new Exception("API returned success=false");
         }
 
-        String settingsJson = root.path("obj").path("settings").asText();
-        if (settingsJson.isEmpty()) {
-            throw new Exception("No settings found");
-        }
-
-        JsonNode settingsNode = objectMapper.readTree(settingsJson);
-        JsonNode clientsNode = settingsNode.path("clients");
-
-        List<Client> clients = new ArrayList<>();
+        // clientStats содержит трафик и срок действия по каждому клиенту inbound'а.
+        // Один и тот же email может встречаться в нескольких inbound'ах — оставляем одну запись
+        Map<String, Client> byEmail = new LinkedHashMap<>();
+        listParser.forEachClientStat(body, client -> byEmail.merge(client.email(), client, Client::preferred));
+        return new ArrayList<>(byEmail.values());
+    }
 
-        for (JsonNode clientNode : clientsNode) {
-            String email = clientNode.path("email").asText();
-            long expiryTime = clientNode.path("expiryTime").asLong(0);
-            long up = clientNode.path("up").asLong(0);
-            long down = clientNode.path("down").asLong(0);
-            boolean enable = clientNode.path("enable").asBoolean(true);
+    public record Client(String email, long expiryTime, long up, long down, boolean enable) {
 
-            clients.add(new Client(email, expiryTime, up, down, enable));
+        // Из двух записей одного email выбираем активную, затем с более поздним сроком (0 — бессрочно)
+        public static Client preferred(Client a, Client b) {
+            if (a.enable() != b.enable()) {
+                return a.enable() ? a : b;
+            }
+            if (a.expiryTime() == 0 || b.expiryTime() == 0) {
+                return a.expiryTime() == 0 ? a : b;
+            }
+            return a.expiryTime() >= b.expiryTime() ? a : b;
         }
 
-        return clients;
-    }
-
-    public record Client(String email, long expiryTime, long up, long down, boolean enable) {
+        // Один email на разных панелях: срок и статус — по preferred, трафик суммируется
+        public static Client merged(Client a, Client b) {
+            Client base = preferred(a, b);
+            return new Client(base.email(), base.expiryTime(), a.up() + b.up(), a.down() + b.down(), base.enable());
+        }
 
         @Override
             public String toString() {
@@ -134,19 +90,13 @@ public class XrayApiService {
         }
 
     public Client getClientTraffic(String email) throws Exception {
-        String url = xrayProperties.getBaseUrl() + "/panel/api/inbounds/getClientTraffics/" + email;
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.COOKIE, sessionCookie);
-
-        HttpEntity<Void> entity = new HttpEntity<>(headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-
-        if (!response.getStatusCode().is2xxSuccessful()) {
-            throw new Exception("Ошибка при получении трафика клиента");
-        }
+        return timed("getClientTraffic", () -> fetchClientTraffic(email));
+    }
 
-        JsonNode root = objectMapper.readTree(response.getBody());
+    private Client fetchClientTraffic(String email) throws Exception {
+        // email — произвольная строка из панели: пробелы, '#', '?' и не-ASCII ломают URI
+        String segment = URLEncoder.encode(email, StandardCharsets.UTF_8).replace("+", "%20");
+        JsonNode root = objectMapper.readTree(getBody("/panel/api/inbounds/getClientTraffics/" + segment));
         if (!root.path("success").asBoolean(false)) return null;
 
         JsonNode obj = root.path("obj");
@@ -160,19 +110,60 @@ public class XrayApiService {
         );
     }
 
-    private boolean isSessionValid() {
+    /**
+     * GET с текущей cookie сессии. Если панель отклонила сессию (401, редирект
+     * на страницу входа или success=false), выполняется один повторный вход и
+     * запрос повторяется; второй ответ возвращается вызывающему как есть.
+     */
+    private String getBody(String path) throws Exception {
+        String url = panel.getBaseUrl() + path;
+
+        for (int attempt = 1; ; attempt++) {
+            String cookie = panelSession.cookie();
+
+            PanelResponse response = transport.get(url, cookie);
+
+            if (!response.is2xx() && !response.isSessionRejected()) {
+                throw new Exception("Запрос " + path + " завершился со статусом " + response.status());
+            }
+
+            boolean rejected = response.isSessionRejected() || !listParser.isSuccess(response.body());
+            if (!rejected || attempt > 1) {
+                if (response.isSessionRejected()) {
+                    throw new Exception("Панель отклонила сессию после повторного входа: " + path);
+                }
+                return response.body();
+            }
+
+            log.debug("Запрос {} отклонён, повторяем после входа", path);
+            meterRegistry.counter("xray.panel.session.rejected", "panel", panel.getName()).increment();
+            panelSession.invalidate(cookie);
+        }
+    }
+
+    // Каждая операция — один проход через предохранитель, включая повторный вход внутри getBody
+    private <T> T timed(String operation, PanelCircuitBreaker.Call<T> call) throws Exception {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
         try {
-            String url = xrayProperties.getBaseUrl() + "/panel/api/inbounds/list";
-            HttpHeaders headers = new HttpHeaders();
-            headers.set(HttpHeaders.COOKIE, sessionCookie);
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-
-            return response.getStatusCode().is2xxSuccessful() &&
-                    objectMapper.readTree(response.getBody()).path("success").asBoolean(false);
-        } catch (Exception e) {
-            log.info("Проверка сессии не удалась: {}", e.getMessage());
-            return false;
+            T result = circuitBreaker.execute(call);
+            outcome = "success";
+            return result;
+        } catch (PanelUnavailableException e) {
+            outcome = "rejected";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("xray.panel.requests",
+                    "panel", panel.getName(), "operation", operation, "outcome", outcome));
         }
     }
+
+    public String name() {
+        return panel.getName();
+    }
+
+    @Override
+    public void close() {
+        transport.close();
+    }
 }
@@ -0,0 +1,209 @@
+package com.xraybot.task;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.ClientChange;
+import com.xraybot.service.ClientDelta;
+import com.xraybot.service.ClientSnapshotCache;
+import com.xraybot.service.UserIndex;
+import com.xraybot.service.XrayApiService.Client;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Очередь моментов, когда срок клиента пересекает пороги уведомлений.
+ * Наполняется из {@link ClientDelta}: при первом снимке — всеми клиентами,
+ * дальше — только добавленными и теми, у кого изменился срок. Поток-таймер
+ * спит до ближайшего момента и передаёт в {@link NotificationScheduler}
+ * лишь тех клиентов, чей срок наступил.
+ * <p>
+ * Записи не удаляются при изменении срока: устаревшие распознаются по
+ * несовпадению {@code expiryTime} и выбрасываются при извлечении.
+ */
+@Component
+public class ExpiryDeadlineScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiryDeadlineScheduler.class);
+
+    private final NotificationScheduler notificationScheduler;
+    private final ClientSnapshotCache clientSnapshotCache;
+    private final ExpiryThresholds thresholds;
+    private final int thresholdCount;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>(Comparator.comparingLong(Deadline::fireAt));
+    // Текущий срок каждого клиента (ключ — нормализованный email)
+    private final Map<String, Long> expiries = new HashMap<>();
+
+    private Thread worker;
+    private volatile boolean running = true;
+
+    public ExpiryDeadlineScheduler(NotificationScheduler notificationScheduler,
+                                   ClientSnapshotCache clientSnapshotCache,
+                                   XrayProperties xrayProperties) {
+        this.notificationScheduler = notificationScheduler;
+        this.clientSnapshotCache = clientSnapshotCache;
+        List<Integer> days = xrayProperties.getNotifications().getThresholds();
+        this.thresholds = new ExpiryThresholds(days);
+        this.thresholdCount = Math.max(1, days.size());
+    }
+
+    @PostConstruct
+    public void start() {
+        worker = Thread.ofPlatform().name("expiry-deadlines").daemon().start(this::run);
+    }
+
+    @EventListener
+    public void onClientDelta(ClientDelta delta) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            for (ClientChange change : delta.changes()) {
+                switch (change) {
+                    case ClientChange.Added added -> track(added.client().email(), added.client().expiryTime(), now);
+                    case ClientChange.ExpiryChanged expiry -> track(expiry.email(), expiry.expiryTime(), now);
+                    case ClientChange.Removed removed -> expiries.remove(UserIndex.normalize(removed.client().email()));
+                    default -> {
+                        // на сроки не влияет
+                    }
+                }
+            }
+            compactIfBloated();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int pendingDeadlines() {
+        lock.lock();
+        try {
+            return deadlines.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void track(String email, long expiryTime, long now) {
+        String key = UserIndex.normalize(email);
+        if (expiryTime == 0) {
+            // Бессрочный клиент — уведомлять не о чем
+            expiries.remove(key);
+            return;
+        }
+        expiries.put(key, expiryTime);
+
+        boolean alreadyCrossed = false;
+        for (long fireAt : thresholds.crossingTimes(expiryTime)) {
+            if (fireAt > now) {
+                deadlines.add(new Deadline(fireAt, key, expiryTime));
+            } else {
+                alreadyCrossed = true;
+            }
+        }
+        // Уже пересечённые пороги проверяются один раз сразу; журнал отсеет отправленные
+        if (alreadyCrossed) {
+            deadlines.add(new Deadline(now, key, expiryTime));
+        }
+    }
+
+    // Частые продления оставляют устаревшие записи — при разрастании очередь пересобирается
+    private void compactIfBloated() {
+        if (deadlines.size() <= 2 * (thresholdCount + 1) * Math.max(16, expiries.size())) {
+            return;
+        }
+        deadlines.removeIf(deadline -> !isCurrent(deadline));
+    }
+
+    private boolean isCurrent(Deadline deadline) {
+        Long expiry = expiries.get(deadline.email());
+        return expiry != null && expiry == deadline.expiryTime();
+    }
+
+    private void run() {
+        while (running) {
+            Set<String> due;
+            lock.lock();
+            try {
+                Deadline head = deadlines.peek();
+                if (head == null) {
+                    changed.await();
+                    continue;
+                }
+                long wait = head.fireAt() - System.currentTimeMillis();
+                if (wait > 0) {
+                    changed.await(wait, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                due = pollDue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            if (!due.isEmpty()) {
+                fire(due);
+            }
+        }
+    }
+
+    private Set<String> pollDue() {
+        long now = System.currentTimeMillis();
+        Set<String> due = new LinkedHashSet<>();
+        while (!deadlines.isEmpty() && deadlines.peek().fireAt() <= now) {
+            Deadline deadline = deadlines.poll();
+            if (isCurrent(deadline)) {
+                due.add(deadline.email());
+            }
+        }
+        return due;
+    }
+
+    private void fire(Set<String> emails) {
+        try {
+            // Снимок уже содержит изменения, из которых построена очередь
+            ClientSnapshotCache.Snapshot snapshot = clientSnapshotCache.current();
+            List<Client> clients = new ArrayList<>(emails.size());
+            for (String email : emails) {
+                Client client = snapshot.find(email);
+                if (client != null) {
+                    clients.add(client);
+                }
+            }
+            log.debug("Наступили сроки уведомлений для {} клиентов", clients.size());
+            notificationScheduler.notifyClients(clients);
+        } catch (Exception e) {
+            log.error("Ошибка при отправке уведомлений по сроку:", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private record Deadline(long fireAt, String email, long expiryTime) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.xraybot.task;
+
+import java.util.List;
+
+/**
+ * Пороги уведомлений об окончании срока и тексты сообщений для них.
+ */
+public class ExpiryThresholds {
+
+    public static final int NO_THRESHOLD = Integer.MAX_VALUE;
+    private static final long SECONDS_PER_DAY = 60 * 60 * 24;
+
+    private final int[] days;
+
+    public ExpiryThresholds(List<Integer> thresholds) {
+        this.days = thresholds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Самый близкий к сроку пересечённый порог в днях или NO_THRESHOLD
+    public int crossedThreshold(long secondsLeft) {
+        int crossed = NO_THRESHOLD;
+        for (int threshold : days) {
+            if (secondsLeft <= threshold * SECONDS_PER_DAY && threshold < crossed) {
+                crossed = threshold;
+            }
+        }
+        return crossed;
+    }
+
+    // Моменты (epoch millis), когда срок expiryTime пересекает каждый из порогов
+    public long[] crossingTimes(long expiryTime) {
+        long[] times = new long[days.length];
+        for (int i = 0; i < days.length; i++) {
+            times[i] = expiryTime - days[i] * SECONDS_PER_DAY * 1000;
+        }
+        return times;
+    }
+
+    public static String notificationText(String email, long secondsLeft) {
+        if (secondsLeft <= 0) {
+            return String.format(
+                    "⛔ Срок действия ключа [%s] истёк.\n" +
+                            "Продлите доступ, чтобы восстановить подключение.",
+                    email
+            );
+        }
+        return String.format(
+                "🔔 Ваш доступ по ключу [%s] истекает через %d дн.\n" +
+                        "Пожалуйста, продлите доступ во избежание отключения.",
+                email, secondsLeft / SECONDS_PER_DAY
+        );
+    }
+}
@@ -0,0 +1,502 @@
+package com.xraybot.task;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xraybot.bot.OutboundDispatcher;
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.ClientSnapshotCache;
+import com.xraybot.service.NotificationLedger;
+import com.xraybot.service.XrayApiService.Client;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Очередь уведомлений на диске. Уведомление сначала записывается в журнал
+ * (с fsync), затем отправляется; каждое изменение состояния дописывается
+ * туда же строкой JSON, так что после падения неотправленные уведомления
+ * досылаются. Ключ уведомления — email, срок и порог: повторная постановка
+ * того же ключа игнорируется, и уже отправленное не уйдёт второй раз.
+ * Неудачи повторяются с экспоненциальной задержкой; чаты, заблокировавшие
+ * бота, попадают в список недоступных и пропускаются до нового /start;
+ * /start возвращает в очередь и уведомления, исчерпавшие попытки. Перед
+ * отправкой срок клиента сверяется с ключом: если клиента продлили или
+ * удалили, уведомление о старом сроке отбрасывается.
+ * <p>
+ * Новые уведомления пишутся с fsync до отправки. Итоги отправок копятся
+ * в памяти и сбрасываются на диск пачкой потоком очереди, поэтому ответы
+ * Telegram не ждут диска. Окно повторной отправки остаётся для сообщений,
+ * которые ушли в Telegram, но не успели попасть на диск до падения процесса.
+ */
+@Component
+@DependsOn("replicaCoordinator")
+public class NotificationOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationOutbox.class);
+
+    private static final long BASE_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long IDLE_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    // Сколько итоги отправок могут ждать записи на диск
+    private static final long FLUSH_DELAY_MILLIS = 200;
+    // Отправленные хранятся ради идемпотентности, пока срок не ушёл далеко в прошлое
+    private static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final int COMPACT_MIN_LINES = 1_000;
+
+    public enum State {
+        PENDING,
+        SENT,
+        DEAD,
+        // Срок клиента изменился после постановки — отправлять уже нечего
+        STALE
+    }
+
+    private final OutboundDispatcher outboundDispatcher;
+    private final NotificationLedger notificationLedger;
+    private final ClientSnapshotCache clientSnapshotCache;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper mapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private final Path path;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Set<Long> deadChats = new HashSet<>();
+    // Ключи, переданные в очередь отправки и ещё не завершённые
+    private final Set<String> submitted = new HashSet<>();
+    // Изменения состояния, ещё не записанные в журнал; порядок сохраняется
+    private final List<Line> unflushed = new ArrayList<>();
+    // Владеет файлом журнала; берётся до монитора очереди, никогда после
+    private final Object io = new Object();
+
+    private FileChannel journal;
+    private int journalLines;
+    private Thread worker;
+    private volatile boolean running = true;
+
+    @Autowired
+    public NotificationOutbox(OutboundDispatcher outboundDispatcher,
+                              NotificationLedger notificationLedger,
+                              ClientSnapshotCache clientSnapshotCache,
+                              MeterRegistry meterRegistry,
+                              XrayProperties properties) {
+        this(outboundDispatcher, notificationLedger, clientSnapshotCache, meterRegistry,
+                properties.getStorage().resolve(properties.getStorage().getNotificationOutbox()));
+    }
+
+    NotificationOutbox(OutboundDispatcher outboundDispatcher,
+                       NotificationLedger notificationLedger,
+                       ClientSnapshotCache clientSnapshotCache,
+                       MeterRegistry meterRegistry,
+                       Path path) {
+        this.path = path;
+        this.outboundDispatcher = outboundDispatcher;
+        this.notificationLedger = notificationLedger;
+        this.clientSnapshotCache = clientSnapshotCache;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public synchronized void init() throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        if (Files.exists(path)) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    apply(mapper.readValue(line, Line.class));
+                    journalLines++;
+                } catch (IOException e) {
+                    // Оборванная последняя строка после падения
+                    log.warn("Пропущена повреждённая строка очереди уведомлений");
+                }
+            }
+        }
+        compact();
+        journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        long pending = entries.values().stream().filter(e -> e.state() == State.PENDING).count();
+        if (pending > 0) {
+            log.info("В очереди уведомлений {} неотправленных после перезапуска", pending);
+        }
+        for (State state : State.values()) {
+            Gauge.builder("xray.notifications.outbox", () -> count(state))
+                    .tag("state", state.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        worker = Thread.ofPlatform().name("notification-outbox").daemon().start(this::run);
+    }
+
+    /**
+     * Сохраняет уведомления на диск одной записью и ставит их в отправку.
+     * Возвращает число действительно новых (по ключу) уведомлений.
+     */
+    public int enqueue(List<Notification> notifications) throws IOException {
+        synchronized (io) {
+            List<Line> lines = new ArrayList<>();
+            int added = 0;
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                for (Notification n : notifications) {
+                    if (entries.containsKey(n.key())) {
+                        continue;
+                    }
+                    State state = deadChats.contains(n.chatId()) ? State.DEAD : State.PENDING;
+                    Entry entry = new Entry(n.key(), n.email(), n.expiryTime(), n.threshold(), n.chatId(), n.text(),
+                            state, 0, now, now);
+                    entries.put(entry.key(), entry);
+                    lines.add(Line.of(entry));
+                    added++;
+                }
+                if (added == 0) {
+                    return 0;
+                }
+                // Накопленные итоги уходят тем же fsync, раньше новых строк
+                lines.addAll(0, unflushed);
+                unflushed.clear();
+            }
+            // Новое уведомление не отправляется, пока оно не на диске
+            write(lines);
+            synchronized (this) {
+                notifyAll();
+            }
+            return added;
+        }
+    }
+
+    // Пользователь снова запустил бота: чат доступен, снятые с отправки уведомления
+    // (и из-за недоступности чата, и исчерпавшие попытки) возвращаются в очередь
+    public synchronized void revive(long chatId) {
+        boolean wasDead = deadChats.remove(chatId);
+        if (wasDead) {
+            unflushed.add(Line.chat(chatId, false));
+        }
+        long now = System.currentTimeMillis();
+        int revived = 0;
+        for (Entry entry : List.copyOf(entries.values())) {
+            if (entry.chatId() == chatId && entry.state() == State.DEAD) {
+                record(entry.withState(State.PENDING, 0, now));
+                revived++;
+            }
+        }
+        if (wasDead || revived > 0) {
+            meterRegistry.counter("xray.notifications.revived").increment(revived);
+            log.info("Чат {} снова доступен для уведомлений, возвращено в очередь: {}", chatId, revived);
+        }
+        notifyAll();
+    }
+
+    public synchronized int count(State state) {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.state() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                flush();
+                List<Entry> due;
+                synchronized (this) {
+                    if (!running) {
+                        return;
+                    }
+                    long now = System.currentTimeMillis();
+                    due = new ArrayList<>();
+                    long nextAt = now + (unflushed.isEmpty() ? IDLE_WAIT_MILLIS : FLUSH_DELAY_MILLIS);
+                    for (Entry entry : entries.values()) {
+                        if (entry.state() != State.PENDING || submitted.contains(entry.key())) {
+                            continue;
+                        }
+                        if (entry.nextAttemptAt() <= now) {
+                            due.add(entry);
+                        } else {
+                            nextAt = Math.min(nextAt, entry.nextAttemptAt());
+                        }
+                    }
+                    if (due.isEmpty()) {
+                        wait(Math.max(1, nextAt - now));
+                        continue;
+                    }
+                    due.forEach(entry -> submitted.add(entry.key()));
+                }
+                // Темп отправки задаёт OutboundDispatcher; здесь только передаём готовые к попытке
+                due.forEach(this::send);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Сбой потока очереди уведомлений", e);
+            }
+        }
+    }
+
+    private void send(Entry entry) {
+        if (isStale(entry)) {
+            dropStale(entry);
+            return;
+        }
+        SendMessage message = new SendMessage();
+        message.setChatId(Long.toString(entry.chatId()));
+        message.setText(entry.text());
+
+        outboundDispatcher.submit(message, entry.chatId(), OutboundDispatcher.Lane.BULK)
+                .whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        delivered(entry);
+                    } else {
+                        failed(entry, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    }
+                });
+    }
+
+    // Ключ содержит срок, на который рассчитано уведомление; снимок — из памяти, панели здесь не ждём
+    private boolean isStale(Entry entry) {
+        Client client;
+        try {
+            client = clientSnapshotCache.find(entry.email());
+        } catch (Exception e) {
+            // Снимка ещё нет и панели недоступны — отправляем по записанному сроку
+            return false;
+        }
+        return client == null || client.expiryTime() != entry.expiryTime();
+    }
+
+    private synchronized void dropStale(Entry entry) {
+        submitted.remove(entry.key());
+        record(entry.withState(State.STALE, entry.attempts(), System.currentTimeMillis()));
+        meterRegistry.counter("xray.notifications.stale").increment();
+        log.info("Уведомление для {} (chatId={}) отброшено: срок клиента изменился", entry.email(), entry.chatId());
+    }
+
+    private synchronized void delivered(Entry entry) {
+        submitted.remove(entry.key());
+        record(entry.withState(State.SENT, entry.attempts() + 1, System.currentTimeMillis()));
+        meterRegistry.counter("xray.notifications.sent").increment();
+        notificationLedger.markNotified(entry.email(), entry.expiryTime(), entry.threshold());
+        log.info("Уведомление отправлено для {} (chatId={})", entry.email(), entry.chatId());
+    }
+
+    private synchronized void failed(Entry entry, Throwable error) {
+        submitted.remove(entry.key());
+        if (!running) {
+            // Отправка отменена остановкой — уведомление останется в очереди до перезапуска
+            return;
+        }
+        int attempts = entry.attempts() + 1;
+        if (isChatUnreachable(error)) {
+            if (deadChats.add(entry.chatId())) {
+                unflushed.add(Line.chat(entry.chatId(), true));
+            }
+            markDead(entry, attempts, "unreachable", "чат недоступен: " + error.getMessage());
+            return;
+        }
+        if (attempts >= MAX_ATTEMPTS) {
+            markDead(entry, attempts, "attempts", "исчерпаны попытки, вернётся в очередь после /start: " + error.getMessage());
+            return;
+        }
+
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempts - 1, 20));
+        long jitter = ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+        record(entry.withState(State.PENDING, attempts, System.currentTimeMillis() + backoff + jitter));
+        meterRegistry.counter("xray.notifications.retried").increment();
+        log.warn("Уведомление для {} не отправлено (попытка {}), повтор через {} с",
+                entry.email(), attempts, (backoff + jitter) / 1000);
+    }
+
+    private void markDead(Entry entry, int attempts, String cause, String reason) {
+        record(entry.withState(State.DEAD, attempts, System.currentTimeMillis()));
+        meterRegistry.counter("xray.notifications.dead", "reason", cause).increment();
+        log.warn("Уведомление для {} (chatId={}) снято с отправки — {}", entry.email(), entry.chatId(), reason);
+    }
+
+    // 403 — бот заблокирован или пользователь удалён; 400 chat not found — чата больше нет
+    private static boolean isChatUnreachable(Throwable error) {
+        if (!(error instanceof TelegramApiRequestException request) || request.getErrorCode() == null) {
+            return false;
+        }
+        int code = request.getErrorCode();
+        String response = request.getApiResponse() != null ? request.getApiResponse().toLowerCase() : "";
+        return code == 403 || (code == 400 && response.contains("chat not found"));
+    }
+
+    // Вызывается под монитором очереди; на диск попадёт при ближайшем flush()
+    private void record(Entry entry) {
+        entries.put(entry.key(), entry);
+        unflushed.add(Line.of(entry));
+        if (unflushed.size() == 1) {
+            // Будим поток очереди: он подождёт FLUSH_DELAY_MILLIS и запишет всё накопленное разом
+            notifyAll();
+        }
+    }
+
+    /**
+     * Дописывает накопленные изменения одной записью с одним fsync, а когда
+     * журнал разросся — переписывает его текущим состоянием.
+     */
+    void flush() {
+        synchronized (io) {
+            List<Line> lines;
+            boolean compactNow;
+            synchronized (this) {
+                if (unflushed.isEmpty()) {
+                    return;
+                }
+                compactNow = journalLines + unflushed.size() > Math.max(COMPACT_MIN_LINES, entries.size() * 4);
+                lines = compactNow ? null : new ArrayList<>(unflushed);
+                unflushed.clear();
+            }
+            try {
+                if (compactNow) {
+                    compact();
+                } else {
+                    write(lines);
+                }
+            } catch (IOException e) {
+                log.error("Ошибка записи очереди уведомлений", e);
+            }
+        }
+    }
+
+    private void apply(Line line) {
+        if (line.entry() != null) {
+            entries.put(line.entry().key(), line.entry());
+        } else if (line.chatId() != null) {
+            if (Boolean.TRUE.equals(line.dead())) {
+                deadChats.add(line.chatId());
+            } else {
+                deadChats.remove(line.chatId());
+            }
+        }
+    }
+
+    private void write(List<Line> lines) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Line line : lines) {
+            sb.append(mapper.writeValueAsString(line)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        // Запись должна быть на диске до отправки, иначе после падения её не восстановить
+        journal.force(false);
+        journalLines += lines.size();
+    }
+
+    // Переписывает журнал текущим состоянием, отбрасывая давно отправленные и снятые записи
+    private void compact() throws IOException {
+        List<Line> lines;
+        synchronized (this) {
+            long horizon = System.currentTimeMillis() - RETENTION_MILLIS;
+            entries.values().removeIf(e -> e.state() != State.PENDING && e.expiryTime() < horizon && e.updatedAt() < horizon);
+
+            lines = new ArrayList<>(entries.size() + deadChats.size());
+            entries.values().forEach(entry -> lines.add(Line.of(entry)));
+            deadChats.forEach(chatId -> lines.add(Line.chat(chatId, true)));
+            // Снимок уже содержит всё накопленное
+            unflushed.clear();
+        }
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder sb = new StringBuilder();
+            for (Line line : lines) {
+                sb.append(mapper.writeValueAsString(line)).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        if (journal != null) {
+            // Старый дескриптор указывает на заменённый файл
+            journal.close();
+            journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        journalLines = lines.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        // Без interrupt: прерванная запись в FileChannel закрывает журнал, и накопленное теряется
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        if (worker != null) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        flush();
+        synchronized (io) {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    /**
+     * Уведомление к постановке в очередь; {@code key} — ключ идемпотентности.
+     */
+    public record Notification(String email, long expiryTime, int threshold, long chatId, String text) {
+
+        public String key() {
+            return email + ":" + expiryTime + ":" + threshold;
+        }
+    }
+
+    public record Entry(String key, String email, long expiryTime, int threshold, long chatId, String text,
+                        State state, int attempts, long nextAttemptAt, long updatedAt) {
+
+        Entry withState(State state, int attempts, long at) {
+            return new Entry(key, email, expiryTime, threshold, chatId, text, state, attempts,
+                    state == State.PENDING ? at : nextAttemptAt, System.currentTimeMillis());
+        }
+    }
+
+    // Строка журнала: либо состояние уведомления, либо отметка о доступности чата
+    public record Line(Entry entry, Long chatId, Boolean dead) {
+
+        static Line of(Entry entry) {
+            return new Line(entry, null, null);
+        }
+
+        static Line chat(long chatId, boolean dead) {
+            return new Line(null, chatId, dead);
+        }
+    }
+}
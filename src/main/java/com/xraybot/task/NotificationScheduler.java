@@ -1,85 +1,143 @@
 package com.xraybot.task;
 
+import com.xraybot.cluster.ReplicaCoordinator;
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.ClientSnapshotCache;
+import com.xraybot.service.NotificationLedger;
+import com.xraybot.service.UserIndex;
 import com.xraybot.service.UserRegistry;
-import com.xraybot.service.XrayApiService;
 import com.xraybot.service.XrayApiService.Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.bots.AbsSender;
 
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Component
 public class NotificationScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(NotificationScheduler.class);
-    private final XrayApiService xrayApiService;
+    private final ClientSnapshotCache clientSnapshotCache;
     private final UserRegistry userRegistry;
-    private final AbsSender bot;
-    private final int inboundId = 2;
+    private final NotificationOutbox notificationOutbox;
+    private final NotificationLedger notificationLedger;
+    private final ReplicaCoordinator replicaCoordinator;
+    private final ExpiryThresholds thresholds;
+    private final MeterRegistry meterRegistry;
 
-    public NotificationScheduler(XrayApiService xrayApiService,
+    public NotificationScheduler(ClientSnapshotCache clientSnapshotCache,
                                  UserRegistry userRegistry,
-                                 AbsSender bot) {
-        this.xrayApiService = xrayApiService;
+                                 NotificationOutbox notificationOutbox,
+                                 NotificationLedger notificationLedger,
+                                 ReplicaCoordinator replicaCoordinator,
+                                 XrayProperties xrayProperties,
+                                 MeterRegistry meterRegistry) {
+        this.clientSnapshotCache = clientSnapshotCache;
         this.userRegistry = userRegistry;
-        this.bot = bot;
+        this.notificationOutbox = notificationOutbox;
+        this.notificationLedger = notificationLedger;
+        this.replicaCoordinator = replicaCoordinator;
+        this.thresholds = new ExpiryThresholds(xrayProperties.getNotifications().getThresholds());
+        this.meterRegistry = meterRegistry;
     }
 
+    /**
+     * Полная сверка всех клиентов панели. Вовремя уведомления отправляет
+     * {@link ExpiryDeadlineScheduler}; этот проход подбирает то, что могло
+     * быть пропущено (перезапуск, недоставленные сообщения), и чистит журнал.
+     */
     @Scheduled(cron = "${xray.cron.expiry-check}")
     public void sendExpiryNotifications() {
         log.info("Выполняется проверка клиентов на окончание срока действия...");
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
 
         try {
-            boolean loggedIn = xrayApiService.login();
-            if (!loggedIn) {
-                log.warn("Не удалось авторизоваться в 3X-UI");
+            if (!replicaCoordinator.isActive()) {
+                log.info("Узел потерял аренду — проверку выполнит другая реплика");
+                outcome = "skipped";
                 return;
             }
 
-            List<Client> clients = xrayApiService.getClients(inboundId);
-            long now = Instant.now().getEpochSecond();
-
-            for (Client client : clients) {
-                if (client.expiryTime() == 0) {
-                    // Нет ограничения по времени — пропускаем
-                    continue;
-                }
-
-                long expirySeconds  = client.expiryTime() / 1000;
-                long secondsLeft = expirySeconds - now;
-                long daysLeft = secondsLeft / (60 * 60 * 24);
-
-                if (daysLeft <= 2) {
-                    String email = client.email();
-                    Long chatId = userRegistry.getChatId(email);
-
-                    if (chatId != null) {
-                        String text = String.format(
-                                "🔔 Ваш доступ по ключу [%s] истекает через %d дн.\n" +
-                                        "Пожалуйста, продлите доступ во избежание отключения.",
-                                email, Math.max(daysLeft, 0)
-                        );
-
-                        SendMessage message = new SendMessage();
-                        message.setChatId(chatId.toString());
-                        message.setText(text);
-
-                        bot.execute(message);
-                        log.info("Уведомление отправлено для {} (chatId={})", email, chatId);
-                    } else {
-                        log.info("Для пользователя {} не найден chatId — возможно, он не запускал /start", email);
-                    }
-                }
-            }
+            // Один запрос /panel/api/inbounds/list отдаёт клиентов всех inbound'ов сразу;
+            // заодно обновляется снимок, из которого отвечает /status
+            Collection<Client> clients = clientSnapshotCache.reload().clients().values();
+            log.info("Проверяется {} клиентов", clients.size());
+
+            notifyDue(clients);
+            notificationLedger.retainOnly(clients.stream().map(Client::email).collect(Collectors.toSet()));
+            outcome = "success";
 
         } catch (Exception e) {
             log.error("Ошибка при выполнении уведомлений:", e);
+        } finally {
+            sample.stop(meterRegistry.timer("xray.notifications.run", "outcome", outcome));
+        }
+    }
+
+    /**
+     * Уведомляет тех из переданных клиентов, у кого пересечён новый порог.
+     */
+    public void notifyClients(Collection<Client> clients) throws IOException {
+        if (replicaCoordinator.isActive()) {
+            notifyDue(clients);
+        }
+    }
+
+    private void notifyDue(Collection<Client> clients) throws IOException {
+        long now = Instant.now().getEpochSecond();
+        meterRegistry.counter("xray.notifications.clients.processed").increment(clients.size());
+
+        List<Due> due = new ArrayList<>();
+        for (Client client : clients) {
+            if (client.expiryTime() == 0) {
+                // Нет ограничения по времени — пропускаем
+                continue;
+            }
+            long secondsLeft = client.expiryTime() / 1000 - now;
+            int threshold = thresholds.crossedThreshold(secondsLeft);
+            // Сообщаем только о новом пересечении порога для текущего срока действия
+            if (threshold != ExpiryThresholds.NO_THRESHOLD && notificationLedger.isDue(client.email(), client.expiryTime(), threshold)) {
+                due.add(new Due(client, threshold, secondsLeft));
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        log.info("Новых пересечений порогов: {}", due.size());
+
+        // chatId всех подходящих клиентов за один проход по индексу
+        long[] chatIds = userRegistry.lookupAll(due.stream().map(d -> d.client().email()).toList());
+
+        List<NotificationOutbox.Notification> notifications = new ArrayList<>(due.size());
+        for (int i = 0; i < due.size(); i++) {
+            Due entry = due.get(i);
+            String email = entry.client().email();
+            long chatId = chatIds[i];
+
+            if (chatId == UserIndex.NO_CHAT) {
+                log.info("Для пользователя {} не найден chatId — возможно, он не запускал /start", email);
+                continue;
+            }
+            notifications.add(new NotificationOutbox.Notification(email, entry.client().expiryTime(), entry.threshold(),
+                    chatId, ExpiryThresholds.notificationText(email, entry.secondsLeft())));
         }
+
+        // Уведомления сохраняются на диск и отправляются очередью независимо друг от друга;
+        // порог отмечается в журнале только после доставки
+        int queued = notificationOutbox.enqueue(notifications);
+        log.info("Поставлено в очередь уведомлений: {}", queued);
+    }
+
+    private record Due(Client client, int threshold, long secondsLeft) {
     }
 }
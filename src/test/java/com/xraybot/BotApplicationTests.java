@@ -1,11 +1,25 @@
 package com.xraybot;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
 
 @SpringBootTest
 class BotApplicationTests {
 
+	// Файлы состояния контекста пишутся во временный каталог, а не в рабочий каталог проекта
+	@TempDir
+	static Path storage;
+
+	@DynamicPropertySource
+	static void storage(DynamicPropertyRegistry registry) {
+		registry.add("xray.storage.dir", () -> storage.toString());
+	}
+
 	@Test
 	void contextLoads() {
 	}
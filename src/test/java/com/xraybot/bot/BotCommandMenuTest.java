@@ -0,0 +1,81 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.commands.SetMyCommands;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BotCommandMenuTest {
+
+    @TempDir
+    Path dir;
+
+    private final XrayProperties properties = new XrayProperties();
+
+    @Test
+    void sendsMenuOnlyWhenItChanged() throws Exception {
+        RecordingBot bot = bot();
+        new BotCommandMenu(bot, properties).syncIfChanged();
+        assertEquals(1, bot.sent.size());
+
+        // Перезапуск с тем же набором команд в Telegram не ходит
+        new BotCommandMenu(bot, properties).syncIfChanged();
+        assertEquals(1, bot.sent.size());
+
+        properties.getAdmin().setChatIds(List.of(7L));
+        new BotCommandMenu(bot, properties).syncIfChanged();
+        assertEquals(3, bot.sent.size());
+    }
+
+    @Test
+    void retriesWhenAdminMenuFailed() throws Exception {
+        properties.getAdmin().setChatIds(List.of(7L));
+        RecordingBot bot = bot();
+        bot.failAdmin = true;
+        new BotCommandMenu(bot, properties).syncIfChanged();
+        assertEquals(1, bot.sent.size());
+
+        bot.failAdmin = false;
+        new BotCommandMenu(bot, properties).syncIfChanged();
+        assertEquals(3, bot.sent.size());
+        new BotCommandMenu(bot, properties).syncIfChanged();
+        assertEquals(3, bot.sent.size());
+    }
+
+    private RecordingBot bot() {
+        properties.setBotUsername("XrayNotifyBot");
+        properties.getStorage().setDir(dir.toString());
+        return new RecordingBot(properties);
+    }
+
+    // Записывает отправленные меню; меню чата администратора может отклонять
+    static class RecordingBot extends NotifyBot {
+
+        final List<SetMyCommands> sent = new CopyOnWriteArrayList<>();
+        volatile boolean failAdmin;
+
+        RecordingBot(XrayProperties properties) {
+            super(properties, null, null, null);
+        }
+
+        @Override
+        public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method) throws TelegramApiException {
+            if (method instanceof SetMyCommands commands) {
+                if (failAdmin && commands.getScope() != null) {
+                    throw new TelegramApiException("chat not found");
+                }
+                sent.add(commands);
+            }
+            return null;
+        }
+    }
+}
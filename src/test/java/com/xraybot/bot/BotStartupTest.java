@@ -0,0 +1,65 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.UserRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BotStartupTest {
+
+    @TempDir
+    Path dir;
+
+    private final XrayProperties properties = new XrayProperties();
+    private UserRegistry userRegistry;
+    private BotStartup startup;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (startup != null) {
+            startup.shutdown();
+        }
+        if (userRegistry != null) {
+            userRegistry.shutdown();
+        }
+    }
+
+    @Test
+    void becomesReadyAfterTelegramRecovers() throws Exception {
+        properties.getStorage().setDir(dir.toString());
+        userRegistry = new UserRegistry(properties);
+        userRegistry.init();
+        BotCommandMenuTest.RecordingBot bot = new BotCommandMenuTest.RecordingBot(properties);
+        AtomicInteger attempts = new AtomicInteger();
+        BotConnection telegram = () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new TelegramApiException("Telegram недоступен");
+            }
+        };
+        startup = new BotStartup(telegram, new BotCommandMenu(bot, properties), userRegistry);
+
+        // Старт приложения не ждёт Telegram
+        startup.start();
+        assertFalse(startup.isReady());
+        assertEquals(Status.DOWN, startup.health().getStatus());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!startup.isReady() || bot.sent.isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "бот не подключился за 5 с");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(2, attempts.get());
+        assertEquals(Status.UP, startup.health().getStatus());
+    }
+}
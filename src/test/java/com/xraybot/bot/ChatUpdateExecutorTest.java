@@ -0,0 +1,93 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatUpdateExecutorTest {
+
+    private final XrayProperties properties = new XrayProperties();
+    private ChatUpdateExecutor executor;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdown();
+    }
+
+    @Test
+    void keepsOrderWithinChat() throws Exception {
+        executor = new ChatUpdateExecutor(properties);
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            assertTrue(executor.submit(1, () -> {
+                handled.add(n);
+                done.countDown();
+            }));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, handled.get(i));
+        }
+    }
+
+    @Test
+    void rejectsOverCapacity() throws Exception {
+        properties.getUpdates().setQueueCapacity(2);
+        executor = new ChatUpdateExecutor(properties);
+        CountDownLatch release = new CountDownLatch(1);
+
+        assertTrue(executor.submit(1, () -> await(release)));
+        assertTrue(executor.submit(2, () -> await(release)));
+        assertFalse(executor.submit(3, () -> {
+        }));
+        assertEquals(2, executor.pendingCount());
+
+        release.countDown();
+        awaitPending(0);
+        assertTrue(executor.submit(3, () -> {
+        }));
+    }
+
+    @Test
+    void rollsBackUpdateRejectedAfterShutdown() throws Exception {
+        executor = new ChatUpdateExecutor(properties);
+        executor.shutdown();
+
+        assertFalse(executor.submit(1, () -> {
+        }));
+        assertEquals(0, executor.pendingCount());
+        // Очередь чата снята, следующий вызов снова пробует запустить обработчик, а не копит задачи
+        assertFalse(executor.submit(1, () -> {
+        }));
+        assertEquals(0, executor.pendingCount());
+    }
+
+    private void awaitPending(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.pendingCount() != count) {
+            assertTrue(System.nanoTime() < deadline, "очередь не разобрана за 5 с");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.xraybot.bot;
+
+import com.xraybot.service.XrayApiService.Client;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientReportTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long DAY = Duration.ofDays(1).toMillis();
+
+    @Test
+    void pageFilledExactlyToLimitIsNotSplit() {
+        List<Client> clients = disabled(400);
+        int base = report(withLast(clients, "z")).page(0).length();
+        String last = "z".repeat(1 + ClientReport.PAGE_LIMIT - base);
+
+        ClientReport report = report(withLast(clients, last));
+
+        assertEquals(1, report.pages());
+        assertEquals(ClientReport.PAGE_LIMIT, report.page(0).length());
+    }
+
+    @Test
+    void rowPastLimitMovesToNextPageWithContinuedHeader() {
+        List<Client> clients = disabled(400);
+        int base = report(withLast(clients, "z")).page(0).length();
+        String last = "z".repeat(2 + ClientReport.PAGE_LIMIT - base);
+
+        ClientReport report = report(withLast(clients, last));
+
+        assertEquals(2, report.pages());
+        assertTrue(report.page(0).length() <= ClientReport.PAGE_LIMIT);
+        assertTrue(report.page(1).contains("🔴 Отключены (продолжение):\n• " + last + "\n"));
+    }
+
+    @Test
+    void pagesStayWithinLimitAndListEveryClientOnce() {
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            long expiry = switch (i % 3) {
+                case 0 -> NOW + (i % 5 + 1) * DAY;
+                case 1 -> NOW - (i % 9 + 1) * DAY;
+                default -> 0;
+            };
+            clients.add(new Client(String.format("client%05d@example.com", i), expiry, 0, 0, i % 3 != 2));
+        }
+        ClientReport report = ClientReport.build(clients, NOW, Duration.ofDays(7), 0, null);
+
+        StringBuilder all = new StringBuilder();
+        for (int page = 0; page < report.pages(); page++) {
+            String text = report.page(page);
+            assertTrue(text.length() <= ClientReport.PAGE_LIMIT, "страница " + page + ": " + text.length());
+            assertEquals(text, report.page(page));
+            all.append(text);
+        }
+        for (Client client : clients) {
+            String row = "• " + client.email() + " ";
+            String bare = "• " + client.email() + "\n";
+            int first = Math.max(all.indexOf(row), all.indexOf(bare));
+            assertTrue(first >= 0, client.email());
+            assertEquals(-1, all.indexOf(row, first + 1));
+            assertEquals(-1, all.indexOf(bare, first + 1));
+        }
+    }
+
+    @Test
+    void emptyReportHasOnePage() {
+        ClientReport report = ClientReport.build(List.of(new Client("alice", 0, 0, 0, true)), NOW,
+                Duration.ofDays(7), 0, null);
+
+        assertEquals(1, report.pages());
+        assertTrue(report.page(0).contains("Ни один клиент не попал в отчёт."));
+    }
+
+    private static ClientReport report(List<Client> clients) {
+        return ClientReport.build(clients, NOW, Duration.ofDays(7), 0, null);
+    }
+
+    // Отключённые клиенты дают строки «• email» одинаковой длины
+    private static List<Client> disabled(int count) {
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            clients.add(new Client(String.format("u%04d", i), 0, 0, 0, false));
+        }
+        return clients;
+    }
+
+    // Последний по алфавиту клиент, длиной которого подгоняется размер страницы
+    private static List<Client> withLast(List<Client> clients, String email) {
+        List<Client> result = new ArrayList<>(clients);
+        result.add(new Client(email, 0, 0, 0, false));
+        return result;
+    }
+}
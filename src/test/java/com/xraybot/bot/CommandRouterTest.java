@@ -0,0 +1,131 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.sim.FakeTelegramSender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandRouterTest {
+
+    private static final long CHAT = 42;
+    private static final long ADMIN_CHAT = 7;
+
+    private final XrayProperties properties = new XrayProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeTelegramSender telegram = new FakeTelegramSender();
+    private final OutboundDispatcher dispatcher;
+    // Вызовы обработчиков: команда и аргументы
+    private final List<String> handled = new ArrayList<>();
+    private final CommandRouter router;
+
+    CommandRouterTest() {
+        properties.setBotUsername("XrayNotifyBot");
+        properties.getAdmin().setChatIds(List.of(ADMIN_CHAT));
+        properties.getTelegram().setPerChatInterval(Duration.ZERO);
+        dispatcher = new OutboundDispatcher(telegram, properties, meterRegistry);
+        dispatcher.start();
+        List<CommandHandler> handlers = new ArrayList<>();
+        for (BotCommandRegistry command : BotCommandRegistry.values()) {
+            handlers.add(handler(command));
+        }
+        router = new CommandRouter(handlers, List.of(), properties, dispatcher, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void routesCommandAddressedToThisBot() {
+        router.route(message(CHAT, "/status@xraynotifybot"));
+        router.route(message(CHAT, "/USAGE@XrayNotifyBot  alice  "));
+        router.route(message(CHAT, "/help"));
+
+        assertEquals(List.of("/status:", "/usage:alice", "/help:"), handled);
+        assertEquals(1, meterRegistry.timer("xray.bot.updates", "command", "/usage").count());
+    }
+
+    @Test
+    void ignoresCommandAddressedToAnotherBot() throws Exception {
+        router.route(message(CHAT, "/status@OtherBot"));
+
+        assertTrue(handled.isEmpty());
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(0, telegram.total());
+    }
+
+    @Test
+    void repliesToUnknownInput() throws Exception {
+        router.route(message(CHAT, "/nope"));
+        router.route(message(CHAT, "привет"));
+        // Служебная команда не из чата администратора выглядит как неизвестная
+        router.route(message(CHAT, "/report"));
+
+        assertTrue(handled.isEmpty());
+        awaitSent(3);
+        assertTrue(telegram.sent().stream().allMatch(sent -> sent.text().equals(CommandRouter.UNKNOWN_COMMAND_REPLY)));
+        assertEquals(3, meterRegistry.timer("xray.bot.updates", "command", "other").count());
+    }
+
+    @Test
+    void routesAdminCommandFromAdminChat() {
+        router.route(message(ADMIN_CHAT, "/report 2"));
+
+        assertEquals(List.of("/report:2"), handled);
+    }
+
+    @Test
+    void rejectsMissingHandler() {
+        assertThrows(IllegalStateException.class, () -> new CommandRouter(
+                List.of(handler(BotCommandRegistry.START)), List.of(), properties, dispatcher, meterRegistry));
+    }
+
+    private CommandHandler handler(BotCommandRegistry command) {
+        return new CommandHandler() {
+            @Override
+            public BotCommandRegistry command() {
+                return command;
+            }
+
+            @Override
+            public void handle(CommandContext context) {
+                handled.add(command.getCommand() + ":" + context.args());
+            }
+        };
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (telegram.total() < count) {
+            assertTrue(System.nanoTime() < deadline, "ответы не отправлены за 5 с");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static Message message(long chatId, String text) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        User from = new User();
+        from.setId(chatId);
+        from.setUserName("alice");
+        Message message = new Message();
+        message.setChat(chat);
+        message.setFrom(from);
+        message.setText(text);
+        return message;
+    }
+}
@@ -0,0 +1,107 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.sim.FakeTelegramSender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundDispatcherTest {
+
+    private final XrayProperties properties = new XrayProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutboundDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void keepsOrderWithinChatAcrossSenders() throws Exception {
+        FakeTelegramSender telegram = new FakeTelegramSender().latency(Duration.ofMillis(2));
+        start(telegram, 1_000, Duration.ZERO);
+
+        List<CompletableFuture<?>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            for (long chat = 1; chat <= 5; chat++) {
+                results.add(dispatcher.submit(message(chat, Integer.toString(i)), chat, OutboundDispatcher.Lane.BULK));
+            }
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        for (long chat = 1; chat <= 5; chat++) {
+            long id = chat;
+            List<String> texts = telegram.sent().stream()
+                    .filter(sent -> sent.chatId() == id)
+                    .map(FakeTelegramSender.Sent::text)
+                    .toList();
+            for (int i = 0; i < 20; i++) {
+                assertEquals(Integer.toString(i), texts.get(i));
+            }
+        }
+    }
+
+    @Test
+    void sendsToDifferentChatsConcurrently() throws Exception {
+        FakeTelegramSender telegram = new FakeTelegramSender().latency(Duration.ofMillis(50));
+        start(telegram, 1_000, Duration.ZERO);
+
+        long started = System.nanoTime();
+        List<CompletableFuture<?>> results = new ArrayList<>();
+        for (long chat = 1; chat <= 8; chat++) {
+            results.add(dispatcher.submit(message(chat, "hi"), chat, OutboundDispatcher.Lane.BULK));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        // Восемь запросов по 50 мс на четырёх отправителях — около 100 мс, а не 400
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertTrue(elapsedMillis < 300, "отправка заняла " + elapsedMillis + " мс");
+    }
+
+    @Test
+    void respectsPerChatIntervalAndPrefersInteractive() throws Exception {
+        FakeTelegramSender telegram = new FakeTelegramSender();
+        start(telegram, 1_000, Duration.ofMillis(100));
+
+        CompletableFuture<?> first = dispatcher.submit(message(7, "bulk-1"), 7, OutboundDispatcher.Lane.BULK);
+        first.get(5, TimeUnit.SECONDS);
+        CompletableFuture<?> bulk = dispatcher.submit(message(7, "bulk-2"), 7, OutboundDispatcher.Lane.BULK);
+        CompletableFuture<?> reply = dispatcher.submit(message(7, "reply"), 7, OutboundDispatcher.Lane.INTERACTIVE);
+        CompletableFuture.allOf(bulk, reply).get(5, TimeUnit.SECONDS);
+
+        List<FakeTelegramSender.Sent> sent = telegram.sent();
+        assertEquals(List.of("bulk-1", "reply", "bulk-2"), sent.stream().map(FakeTelegramSender.Sent::text).toList());
+        for (int i = 1; i < sent.size(); i++) {
+            long gap = sent.get(i).receivedAtNanos() - sent.get(i - 1).receivedAtNanos();
+            assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(90), "интервал " + gap / 1_000_000 + " мс");
+        }
+    }
+
+    private void start(FakeTelegramSender telegram, int messagesPerSecond, Duration perChatInterval) {
+        properties.getTelegram().setMessagesPerSecond(messagesPerSecond);
+        properties.getTelegram().setPerChatInterval(perChatInterval);
+        properties.getTelegram().setSenders(4);
+        dispatcher = new OutboundDispatcher(telegram, properties, meterRegistry);
+        dispatcher.start();
+    }
+
+    private static SendMessage message(long chatId, String text) {
+        SendMessage message = new SendMessage();
+        message.setChatId(Long.toString(chatId));
+        message.setText(text);
+        return message;
+    }
+}
@@ -0,0 +1,58 @@
+package com.xraybot.bot;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ReportCursorsTest {
+
+    private static final long CHAT = 42;
+
+    private final ClientReport report = ClientReport.build(List.of(), 0, Duration.ofDays(7), 0, null);
+
+    @Test
+    void servesReportOnlyToItsChat() {
+        ReportCursors cursors = new ReportCursors(Duration.ofMinutes(10), 10);
+        String id = cursors.put(CHAT, report);
+
+        assertSame(report, cursors.get(id, CHAT));
+        assertNull(cursors.get(id, CHAT + 1));
+        assertNull(cursors.get("missing", CHAT));
+    }
+
+    @Test
+    void expiredReportIsDropped() throws Exception {
+        ReportCursors cursors = new ReportCursors(Duration.ofMillis(50), 10);
+        String id = cursors.put(CHAT, report);
+
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertNull(cursors.get(id, CHAT));
+        assertEquals(0, cursors.size());
+    }
+
+    @Test
+    void newReportEvictsExpiredAndThenOldest() throws Exception {
+        ReportCursors cursors = new ReportCursors(Duration.ofMillis(200), 2);
+        String expired = cursors.put(CHAT, report);
+        TimeUnit.MILLISECONDS.sleep(250);
+
+        String oldest = cursors.put(CHAT, report);
+        TimeUnit.MILLISECONDS.sleep(5);
+        String middle = cursors.put(CHAT, report);
+        TimeUnit.MILLISECONDS.sleep(5);
+        String newest = cursors.put(CHAT, report);
+
+        assertEquals(2, cursors.size());
+        assertNull(cursors.get(expired, CHAT));
+        assertNull(cursors.get(oldest, CHAT));
+        assertSame(report, cursors.get(middle, CHAT));
+        assertSame(report, cursors.get(newest, CHAT));
+    }
+}
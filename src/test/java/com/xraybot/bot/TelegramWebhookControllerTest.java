@@ -0,0 +1,36 @@
+package com.xraybot.bot;
+
+import com.xraybot.config.XrayProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TelegramWebhookControllerTest {
+
+    private final XrayProperties properties = new XrayProperties();
+
+    TelegramWebhookControllerTest() {
+        properties.getTelegram().getWebhook().setUrl("https://bot.example.com/telegram/webhook");
+        properties.getTelegram().getWebhook().setSecretToken("secret");
+    }
+
+    @Test
+    void acceptsCompleteSettings() {
+        assertDoesNotThrow(() -> new TelegramWebhookController(null, properties));
+    }
+
+    @Test
+    void rejectsBlankUrl() {
+        properties.getTelegram().getWebhook().setUrl(" ");
+
+        assertThrows(IllegalStateException.class, () -> new TelegramWebhookController(null, properties));
+    }
+
+    @Test
+    void rejectsBlankSecretToken() {
+        properties.getTelegram().getWebhook().setSecretToken("");
+
+        assertThrows(IllegalStateException.class, () -> new TelegramWebhookController(null, properties));
+    }
+}
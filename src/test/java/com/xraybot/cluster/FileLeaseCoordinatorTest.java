@@ -0,0 +1,93 @@
+package com.xraybot.cluster;
+
+import com.xraybot.config.XrayProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileLeaseCoordinatorTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<FileLeaseCoordinator> coordinators = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        coordinators.forEach(FileLeaseCoordinator::release);
+    }
+
+    @Test
+    void standbyStartsOnlyAfterLeaderReleasesLease() throws Exception {
+        FileLeaseCoordinator leader = coordinator("a", () -> {
+        });
+        leader.init();
+        assertTrue(leader.isActive());
+
+        FileLeaseCoordinator standby = coordinator("b", () -> {
+        });
+        CountDownLatch started = new CountDownLatch(1);
+        Thread.ofVirtual().start(() -> {
+            try {
+                standby.init();
+                started.countDown();
+            } catch (Exception ignored) {
+            }
+        });
+        // Ведущий продлевает аренду, резервный узел продолжает ждать
+        assertFalse(started.await(600, TimeUnit.MILLISECONDS));
+
+        leader.release();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(standby.isActive());
+        assertFalse(leader.isActive());
+    }
+
+    @Test
+    void stopsWhenLeaseTakenByAnotherNode() throws Exception {
+        CountDownLatch lost = new CountDownLatch(1);
+        FileLeaseCoordinator leader = coordinator("a", lost::countDown);
+        leader.init();
+
+        Files.writeString(dir.resolve("leader.lease"), "b\n" + (System.currentTimeMillis() + 60_000));
+
+        assertTrue(lost.await(5, TimeUnit.SECONDS));
+        assertFalse(leader.isActive());
+    }
+
+    @Test
+    void rejectsPartitioning() {
+        XrayProperties properties = properties("a");
+        properties.getCluster().setPartitioning(true);
+
+        assertThrows(IllegalStateException.class, () -> new FileLeaseCoordinator(properties, () -> {
+        }));
+    }
+
+    private FileLeaseCoordinator coordinator(String nodeId, Runnable onLeaseLost) {
+        FileLeaseCoordinator coordinator = new FileLeaseCoordinator(properties(nodeId), onLeaseLost);
+        coordinators.add(coordinator);
+        return coordinator;
+    }
+
+    private XrayProperties properties(String nodeId) {
+        XrayProperties properties = new XrayProperties();
+        properties.getCluster().setLeaseDir(dir.toString());
+        properties.getCluster().setNodeId(nodeId);
+        properties.getCluster().setLeaseDuration(Duration.ofMillis(400));
+        properties.getCluster().setHeartbeatInterval(Duration.ofMillis(100));
+        return properties;
+    }
+}
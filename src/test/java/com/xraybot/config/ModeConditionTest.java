@@ -0,0 +1,51 @@
+package com.xraybot.config;
+
+import com.xraybot.config.XrayProperties.Telegram.Mode;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModeConditionTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withUserConfiguration(WebhookOnly.class);
+
+    @Test
+    void acceptsEveryFormOfEnumValue() {
+        for (String value : new String[]{"webhook", "WEBHOOK", "Webhook"}) {
+            runner.withPropertyValues("xray.telegram.mode=" + value)
+                    .run(context -> assertTrue(context.containsBean("modeConditionTest.WebhookOnly"), value));
+        }
+        for (String value : new String[]{"long-polling", "LONG_POLLING", "longPolling"}) {
+            runner.withPropertyValues("xray.telegram.mode=" + value)
+                    .run(context -> assertFalse(context.containsBean("modeConditionTest.WebhookOnly"), value));
+        }
+    }
+
+    @Test
+    void usesDefaultWhenPropertyMissing() {
+        runner.run(context -> assertFalse(context.containsBean("modeConditionTest.WebhookOnly")));
+    }
+
+    @Test
+    void failsStartupOnUnknownMode() {
+        runner.withPropertyValues("xray.telegram.mode=webhok")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Configuration
+    @Conditional(WebhookMode.class)
+    static class WebhookOnly {
+    }
+
+    static class WebhookMode extends ModeCondition<Mode> {
+        WebhookMode() {
+            super("xray.telegram.mode", Mode.class, Mode.LONG_POLLING, Mode.WEBHOOK);
+        }
+    }
+}
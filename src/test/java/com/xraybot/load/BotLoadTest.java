@@ -0,0 +1,210 @@
+package com.xraybot.load;
+
+import com.xraybot.bot.BotCommandRegistry;
+import com.xraybot.bot.ChatUpdateExecutor;
+import com.xraybot.bot.CommandContext;
+import com.xraybot.bot.CommandHandler;
+import com.xraybot.bot.CommandRouter;
+import com.xraybot.bot.HelpCommandHandler;
+import com.xraybot.bot.OutboundDispatcher;
+import com.xraybot.bot.StatusCommandHandler;
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.ClientDiffEngine;
+import com.xraybot.service.ClientSnapshotCache;
+import com.xraybot.service.PanelFederation;
+import com.xraybot.sim.FakeTelegramSender;
+import com.xraybot.sim.PanelSimulator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Нагрузочный прогон без сети: две заглушки панели с задержкой и ошибками,
+ * поддельный Telegram и настоящие кэш, маршрутизатор команд, исполнитель
+ * обновлений и очередь отправки. Пишет в лог пропускную способность и
+ * перцентили задержек. Запуск: {@code mvn -Pload test}.
+ */
+@Tag("load")
+class BotLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BotLoadTest.class);
+
+    private static final int CLIENTS_PER_PANEL = 20_000;
+    private static final int CHATS = 2_000;
+    private static final int STATUS_PER_CHAT = 5;
+    private static final int SCANS = 20;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    private PanelFederation federation;
+    private ClientSnapshotCache cache;
+    private FakeTelegramSender telegram;
+    private OutboundDispatcher dispatcher;
+    private ChatUpdateExecutor updates;
+    private CommandRouter router;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        PanelSimulator de = new PanelSimulator("admin", "secret", 4)
+                .generateClients(CLIENTS_PER_PANEL, 1)
+                .latency(Duration.ofMillis(20));
+        PanelSimulator nl = new PanelSimulator("admin", "secret", 4)
+                .generateClients(CLIENTS_PER_PANEL, 2)
+                .latency(Duration.ofMillis(80))
+                .errorRate(0.05);
+        resources.add(de);
+        resources.add(nl);
+
+        XrayProperties properties = new XrayProperties();
+        properties.setBotUsername("load_bot");
+        properties.setPanels(List.of(de.panel("de"), nl.panel("nl")));
+        properties.getCache().setRefreshInterval(Duration.ofHours(1));
+        properties.getTelegram().setMessagesPerSecond(1_000_000);
+        properties.getTelegram().setPerChatInterval(Duration.ZERO);
+        properties.getUpdates().setQueueCapacity(CHATS * STATUS_PER_CHAT);
+
+        federation = new PanelFederation(properties, meterRegistry);
+        cache = new ClientSnapshotCache(federation, properties, new ClientDiffEngine(event -> {
+        }));
+        telegram = new FakeTelegramSender().latency(Duration.ofMillis(1));
+        dispatcher = new OutboundDispatcher(telegram, properties, meterRegistry);
+        dispatcher.start();
+        updates = new ChatUpdateExecutor(properties);
+
+        List<CommandHandler> handlers = List.of(
+                new StatusCommandHandler(cache, properties),
+                new HelpCommandHandler(),
+                stub(BotCommandRegistry.START),
+                stub(BotCommandRegistry.USAGE),
+                stub(BotCommandRegistry.REPORT));
+        router = new CommandRouter(handlers, List.of(), properties, dispatcher, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        updates.shutdown();
+        dispatcher.shutdown();
+        federation.shutdown();
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void concurrentStatusRequests() throws Exception {
+        cache.reload();
+        int total = CHATS * STATUS_PER_CHAT;
+        Map<Long, List<Long>> sentAt = new ConcurrentHashMap<>();
+
+        long started = System.nanoTime();
+        for (int round = 0; round < STATUS_PER_CHAT; round++) {
+            for (int chat = 0; chat < CHATS; chat++) {
+                long chatId = 1_000_000L + chat;
+                Message message = message(chatId, "user" + chat, round % 2 == 0 ? "/status" : "/status@load_bot");
+                sentAt.computeIfAbsent(chatId, id -> new ArrayList<>()).add(System.nanoTime());
+                updates.submit(chatId, () -> router.route(message));
+            }
+        }
+        awaitSent(total, Duration.ofMinutes(2));
+        long elapsed = System.nanoTime() - started;
+
+        // Ответы в один чат приходят по порядку запросов — сопоставляем по номеру
+        long[] latencies = new long[total];
+        Map<Long, Integer> seen = new ConcurrentHashMap<>();
+        int i = 0;
+        for (FakeTelegramSender.Sent sent : telegram.sent()) {
+            int index = seen.merge(sent.chatId(), 1, Integer::sum) - 1;
+            latencies[i++] = sent.receivedAtNanos() - sentAt.get(sent.chatId()).get(index);
+        }
+
+        assertEquals(total, telegram.total());
+        report("/status", total, elapsed, latencies);
+    }
+
+    @Test
+    void repeatedFullScans() throws Exception {
+        long[] durations = new long[SCANS];
+        long started = System.nanoTime();
+        int clients = 0;
+        for (int i = 0; i < SCANS; i++) {
+            long scanStarted = System.nanoTime();
+            clients = cache.reload().clients().size();
+            durations[i] = System.nanoTime() - scanStarted;
+        }
+        long elapsed = System.nanoTime() - started;
+
+        assertEquals(CLIENTS_PER_PANEL, clients);
+        report("полный опрос панелей (" + clients + " клиентов)", SCANS, elapsed, durations);
+    }
+
+    private void awaitSent(int expected, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (telegram.total() < expected && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static void report(String name, int operations, long elapsedNanos, long[] latencies) {
+        Arrays.sort(latencies);
+        log.info("{}", String.format("%s: %d операций за %d мс, %.0f оп/с; p50=%.2f мс p95=%.2f мс p99=%.2f мс max=%.2f мс",
+                name, operations, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                operations / (elapsedNanos / 1e9),
+                percentile(latencies, 0.50), percentile(latencies, 0.95),
+                percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    private static Message message(long chatId, String username, String text) {
+        User from = new User();
+        from.setId(chatId);
+        from.setUserName(username);
+        from.setFirstName(username);
+        from.setIsBot(false);
+
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        chat.setType("private");
+
+        Message message = new Message();
+        message.setChat(chat);
+        message.setFrom(from);
+        message.setText(text);
+        return message;
+    }
+
+    private static CommandHandler stub(BotCommandRegistry command) {
+        return new CommandHandler() {
+            @Override
+            public BotCommandRegistry command() {
+                return command;
+            }
+
+            @Override
+            public void handle(CommandContext context) {
+                context.reply(command.getCommand());
+            }
+        };
+    }
+}
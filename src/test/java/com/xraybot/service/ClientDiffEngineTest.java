@@ -0,0 +1,131 @@
+package com.xraybot.service;
+
+import com.xraybot.service.XrayApiService.Client;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientDiffEngineTest {
+
+    private final List<Object> published = new ArrayList<>();
+    private final ClientDiffEngine engine = new ClientDiffEngine(published::add);
+
+    @Test
+    void firstSnapshotAddsEveryClient() {
+        ClientDelta delta = engine.apply(Map.of("alice", client("alice", 1_000, 1, 1, true),
+                "bob", client("bob", 0, 0, 0, true)));
+
+        assertTrue(delta.initial());
+        assertEquals(2, delta.changesOf(ClientChange.Added.class).size());
+        assertEquals(List.of(delta), published);
+    }
+
+    @Test
+    void emptyFirstSnapshotIsInitialButNotPublished() {
+        ClientDelta delta = engine.apply(Map.of());
+
+        assertTrue(delta.initial());
+        assertTrue(published.isEmpty());
+        // Следующий снимок уже сравнивается с пустым, а не считается первым
+        assertFalse(engine.apply(Map.of("alice", client("alice", 0, 0, 0, true))).initial());
+    }
+
+    @Test
+    void unchangedSnapshotPublishesNothing() {
+        engine.apply(Map.of("alice", client("alice", 1_000, 1, 1, true)));
+        published.clear();
+
+        ClientDelta delta = engine.apply(Map.of("alice", client("alice", 1_000, 1, 1, true)));
+
+        assertTrue(delta.isEmpty());
+        assertTrue(published.isEmpty());
+    }
+
+    @Test
+    void reportsEveryChangeOfOneClient() {
+        engine.apply(Map.of("alice", client("alice", 1_000, 10, 20, true)));
+
+        ClientDelta delta = engine.apply(Map.of("alice", client("alice", 2_000, 15, 20, false)));
+
+        assertFalse(delta.initial());
+        assertEquals(List.of(
+                new ClientChange.EnableChanged("alice", false),
+                new ClientChange.ExpiryChanged("alice", 1_000, 2_000),
+                new ClientChange.TrafficIncreased("alice", 5, 0, 15, 20)), delta.changes());
+    }
+
+    @Test
+    void reportsCounterResetAsNegativeIncrease() {
+        engine.apply(Map.of("alice", client("alice", 0, 500, 700, true)));
+
+        ClientDelta delta = engine.apply(Map.of("alice", client("alice", 0, 10, 0, true)));
+
+        assertEquals(List.of(new ClientChange.TrafficIncreased("alice", -490, -700, 10, 0)), delta.changes());
+    }
+
+    @Test
+    void takesTrafficIncreaseFromPerPanelCounters() {
+        engine.apply(Map.of("alice", client("alice", 0, 800, 0, true)),
+                Map.of("alice", new PanelFederation.Traffic(800, 0)));
+
+        // Одна панель сбросила счётчик: сумма по панелям упала, накопленный счётчик вырос на 10
+        ClientDelta delta = engine.apply(Map.of("alice", client("alice", 0, 310, 0, true)),
+                Map.of("alice", new PanelFederation.Traffic(810, 0)));
+
+        assertEquals(List.of(new ClientChange.TrafficIncreased("alice", 10, 0, 310, 0)), delta.changes());
+    }
+
+    @Test
+    void reportsOnlyChangedClients() {
+        engine.apply(Map.of("alice", client("alice", 1_000, 1, 1, true), "bob", client("bob", 1_000, 1, 1, true)));
+
+        ClientDelta delta = engine.apply(Map.of("alice", client("alice", 1_000, 1, 1, true),
+                "bob", client("bob", 1_000, 1, 1, false)));
+
+        assertEquals(List.of(new ClientChange.EnableChanged("bob", false)), delta.changes());
+    }
+
+    @Test
+    void neverReportsNegativeIncreaseFromPerPanelCounters() {
+        engine.apply(Map.of("alice", client("alice", 0, 800, 100, true)),
+                Map.of("alice", new PanelFederation.Traffic(800, 100)));
+
+        // Клиент пропал из одной панели: накопленная сумма уменьшилась
+        ClientDelta delta = engine.apply(Map.of("alice", client("alice", 0, 500, 70, true)),
+                Map.of("alice", new PanelFederation.Traffic(500, 70)));
+
+        assertEquals(List.of(new ClientChange.TrafficIncreased("alice", 0, 0, 500, 70)), delta.changes());
+    }
+
+    @Test
+    void fallsBackToSnapshotDifferenceWithoutPreviousCounters() {
+        engine.apply(Map.of("alice", client("alice", 0, 100, 0, true)));
+
+        ClientDelta delta = engine.apply(Map.of("alice", client("alice", 0, 150, 0, true)),
+                Map.of("alice", new PanelFederation.Traffic(150, 0)));
+
+        assertEquals(List.of(new ClientChange.TrafficIncreased("alice", 50, 0, 150, 0)), delta.changes());
+    }
+
+    @Test
+    void reportsAddedAndRemovedClients() {
+        Client alice = client("alice", 0, 0, 0, true);
+        engine.apply(Map.of("alice", alice));
+
+        Client bob = client("bob", 0, 0, 0, true);
+        ClientDelta delta = engine.apply(Map.of("bob", bob));
+
+        assertEquals(List.of(new ClientChange.Added(bob)), delta.changesOf(ClientChange.Added.class));
+        assertEquals(List.of(new ClientChange.Removed(alice)), delta.changesOf(ClientChange.Removed.class));
+    }
+
+    private static Client client(String email, long expiryTime, long up, long down, boolean enable) {
+        return new Client(email, expiryTime, up, down, enable);
+    }
+}
@@ -0,0 +1,91 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.XrayApiService.Client;
+import com.xraybot.sim.PanelSimulator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ClientSnapshotCacheTest {
+
+    private final XrayProperties properties = new XrayProperties();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void servesLookupsFromMemory() throws Exception {
+        PanelSimulator panel = simulator().clients(List.of(new Client("alice", 1_000, 1, 2, true)));
+        ClientSnapshotCache cache = cache(panel);
+
+        assertEquals(1_000, cache.find("alice").expiryTime());
+        assertEquals(2, cache.find("Alice").down());
+        assertNull(cache.find("bob"));
+        // Три обращения /status — один запрос к панели
+        assertEquals(1, panel.requestCount("list"));
+    }
+
+    @Test
+    void concurrentFirstLookupsShareOneLoad() throws Exception {
+        PanelSimulator panel = simulator().generateClients(50, 1).latency(Duration.ofMillis(50));
+        ClientSnapshotCache cache = cache(panel);
+
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            callers.add(Thread.ofVirtual().start(() -> {
+                try {
+                    assertEquals(50, cache.current().clients().size());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        assertEquals(1, panel.requestCount("list"));
+    }
+
+    @Test
+    void reloadReadsPanelRegardlessOfTtl() throws Exception {
+        PanelSimulator panel = simulator().clients(List.of(new Client("alice", 1_000, 1, 2, true)));
+        ClientSnapshotCache cache = cache(panel);
+        cache.current();
+
+        panel.clients(List.of(new Client("alice", 2_000, 1, 2, true)));
+
+        assertEquals(1_000, cache.find("alice").expiryTime());
+        assertEquals(2_000, cache.reload().find("alice").expiryTime());
+        assertEquals(2, panel.requestCount("list"));
+    }
+
+    private ClientSnapshotCache cache(PanelSimulator panel) {
+        properties.setPanels(List.of(panel.panel("de")));
+        properties.getCache().setTtl(Duration.ofMinutes(5));
+        PanelFederation federation = new PanelFederation(properties, new SimpleMeterRegistry());
+        resources.add(federation::shutdown);
+        ClientSnapshotCache cache = new ClientSnapshotCache(federation, properties, new ClientDiffEngine(event -> {
+        }));
+        resources.add(cache::shutdown);
+        return cache;
+    }
+
+    private PanelSimulator simulator() throws Exception {
+        PanelSimulator simulator = new PanelSimulator("admin", "secret", 1);
+        resources.add(simulator);
+        return simulator;
+    }
+}
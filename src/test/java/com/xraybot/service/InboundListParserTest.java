@@ -0,0 +1,61 @@
+package com.xraybot.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.xraybot.service.XrayApiService.Client;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InboundListParserTest {
+
+    private static final String LIST = """
+            {"success":true,"msg":"","obj":[
+              {"id":1,"remark":"vless","settings":"{\\"clients\\":[{\\"email\\":\\"ignored\\"}]}",
+               "clientStats":[
+                 {"id":1,"inboundId":1,"email":"alice","up":10,"down":20,"expiryTime":1000,"enable":true,"reset":0},
+                 {"id":2,"inboundId":1,"email":"bob","up":1,"down":2,"expiryTime":0,"enable":false}
+               ]},
+              {"id":2,"remark":"trojan","streamSettings":{"network":"tcp"},"clientStats":null},
+              {"id":7,"remark":"vmess","clientStats":[
+                 {"email":"carol","up":"5","down":6,"expiryTime":2000,"extra":{"nested":[1,2]}}
+               ]}
+            ]}""";
+
+    private final InboundListParser parser = new InboundListParser(new JsonFactory());
+
+    @Test
+    void readsClientStatsOfEveryInbound() throws Exception {
+        List<Client> clients = new ArrayList<>();
+        parser.forEachClientStat(LIST, clients::add);
+
+        assertEquals(List.of(
+                new Client("alice", 1000, 10, 20, true),
+                new Client("bob", 0, 1, 2, false),
+                new Client("carol", 2000, 5, 6, true)), clients);
+    }
+
+    @Test
+    void readsSuccessFlag() {
+        assertTrue(parser.isSuccess(LIST));
+        assertFalse(parser.isSuccess("{\"obj\":null,\"success\":false}"));
+        assertFalse(parser.isSuccess("<html>login</html>"));
+    }
+
+    @Test
+    void prefersEnabledThenLaterExpiryForDuplicateEmail() {
+        Client disabled = new Client("alice", 5_000, 0, 0, false);
+        Client early = new Client("alice", 1_000, 0, 0, true);
+        Client late = new Client("alice", 2_000, 0, 0, true);
+        Client unlimited = new Client("alice", 0, 0, 0, true);
+
+        assertSame(early, Client.preferred(disabled, early));
+        assertSame(late, Client.preferred(early, late));
+        assertSame(unlimited, Client.preferred(late, unlimited));
+    }
+}
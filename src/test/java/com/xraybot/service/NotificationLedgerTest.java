@@ -0,0 +1,96 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationLedgerTest {
+
+    private static final long EXPIRY = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void dueOnlyForCloserThreshold() {
+        NotificationLedger ledger = ledger();
+        assertTrue(ledger.isDue("alice", EXPIRY, 3));
+
+        ledger.markNotified("alice", EXPIRY, 3);
+
+        assertFalse(ledger.isDue("alice", EXPIRY, 3));
+        assertFalse(ledger.isDue("alice", EXPIRY, 7));
+        assertTrue(ledger.isDue("alice", EXPIRY, 1));
+    }
+
+    @Test
+    void lateMarkOfFartherThresholdKeepsCloserOne() {
+        NotificationLedger ledger = ledger();
+        ledger.markNotified("alice", EXPIRY, 1);
+        // Итог отправки порога 3 пришёл позже порога 1
+        ledger.markNotified("alice", EXPIRY, 3);
+
+        assertFalse(ledger.isDue("alice", EXPIRY, 1));
+    }
+
+    @Test
+    void renewalResetsThresholds() {
+        NotificationLedger ledger = ledger();
+        ledger.markNotified("alice", EXPIRY, 1);
+
+        assertTrue(ledger.isDue("alice", EXPIRY + 30L * 86_400_000, 7));
+    }
+
+    @Test
+    void keysByNormalizedEmail() {
+        NotificationLedger ledger = ledger();
+        ledger.markNotified(" @Alice ", EXPIRY, 3);
+
+        assertFalse(ledger.isDue("alice", EXPIRY, 3));
+
+        ledger.retainOnly(Set.of("ALICE"));
+        assertFalse(ledger.isDue("alice", EXPIRY, 3));
+        ledger.retainOnly(Set.of("bob"));
+        assertTrue(ledger.isDue("alice", EXPIRY, 3));
+    }
+
+    @Test
+    void normalizesKeysOfOlderFile() throws Exception {
+        XrayProperties properties = properties();
+        Files.writeString(properties.getStorage().resolve(properties.getStorage().getNotificationLedger()),
+                "{\"Alice\":{\"expiryTime\":" + EXPIRY + ",\"lastThreshold\":3}}");
+
+        NotificationLedger ledger = new NotificationLedger(properties);
+        ledger.init();
+
+        assertFalse(ledger.isDue("alice", EXPIRY, 3));
+    }
+
+    @Test
+    void survivesRestart() {
+        NotificationLedger ledger = ledger();
+        ledger.markNotified("alice", EXPIRY, 3);
+        ledger.shutdown();
+
+        assertFalse(ledger().isDue("alice", EXPIRY, 3));
+    }
+
+    private NotificationLedger ledger() {
+        NotificationLedger ledger = new NotificationLedger(properties());
+        ledger.init();
+        return ledger;
+    }
+
+    private XrayProperties properties() {
+        XrayProperties properties = new XrayProperties();
+        properties.getStorage().setDir(dir.toString());
+        return properties;
+    }
+}
@@ -0,0 +1,184 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PanelCircuitBreakerTest {
+
+    private final XrayProperties.Circuit circuit = new XrayProperties.Circuit();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    PanelCircuitBreakerTest() {
+        circuit.setFailureRateThreshold(50);
+        circuit.setSlidingWindowSize(4);
+        circuit.setMinimumCalls(4);
+        circuit.setOpenDuration(Duration.ofMillis(100));
+        circuit.setMaxConcurrentCalls(1);
+        circuit.setMaxWait(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() throws Exception {
+        PanelCircuitBreaker breaker = breaker();
+        breaker.execute(() -> "ok");
+        breaker.execute(() -> "ok");
+        fail(breaker);
+        assertEquals(PanelCircuitBreaker.State.CLOSED, breaker.state());
+
+        // 2 ошибки из 4 — ровно порог
+        fail(breaker);
+        assertEquals(PanelCircuitBreaker.State.OPEN, breaker.state());
+        assertThrows(PanelUnavailableException.class, () -> breaker.execute(() -> "ok"));
+        assertEquals(1, rejected("open"));
+    }
+
+    @Test
+    void exposesStateGauge() throws Exception {
+        PanelCircuitBreaker breaker = opened();
+        breaker.registerStateGauge();
+
+        double state = meterRegistry.get("xray.panel.circuit.state").gauge().value();
+        assertEquals(PanelCircuitBreaker.State.OPEN.ordinal(), (int) state);
+    }
+
+    @Test
+    void closesAfterSuccessfulProbe() throws Exception {
+        PanelCircuitBreaker breaker = opened();
+        TimeUnit.MILLISECONDS.sleep(150);
+
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        assertEquals(PanelCircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void reopensAfterFailedProbe() throws Exception {
+        PanelCircuitBreaker breaker = opened();
+        TimeUnit.MILLISECONDS.sleep(150);
+
+        fail(breaker);
+        assertEquals(PanelCircuitBreaker.State.OPEN, breaker.state());
+        assertThrows(PanelUnavailableException.class, () -> breaker.execute(() -> "ok"));
+    }
+
+    @Test
+    void rejectsOthersWhileProbeIsInFlightWithoutWaitingForBulkhead() throws Exception {
+        PanelCircuitBreaker breaker = opened();
+        TimeUnit.MILLISECONDS.sleep(150);
+
+        // Пробный вызов держит единственное место в семафоре
+        CountDownLatch release = new CountDownLatch(1);
+        Thread probe = hang(breaker, release, null);
+        assertEquals(PanelCircuitBreaker.State.HALF_OPEN, breaker.state());
+
+        long started = System.nanoTime();
+        assertThrows(PanelUnavailableException.class, () -> breaker.execute(() -> "ok"));
+        assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(500), "отказ ждал семафор");
+        assertEquals(1, rejected("open"));
+
+        release.countDown();
+        probe.join();
+        assertEquals(PanelCircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void probeWithoutBulkheadSlotLetsNextCallerProbe() throws Exception {
+        circuit.setMaxConcurrentCalls(2);
+        circuit.setMaxWait(Duration.ofMillis(500));
+        PanelCircuitBreaker breaker = breaker();
+        breaker.execute(() -> "ok");
+        breaker.execute(() -> "ok");
+        fail(breaker);
+
+        // Оба места заняты вызовами, начатыми до размыкания; третий ждёт места в семафоре
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch failNow = new CountDownLatch(1);
+        Thread slow = hang(breaker, release, null);
+        Thread failing = hang(breaker, failNow, new IOException("panel down"));
+        CountDownLatch waitingEntered = new CountDownLatch(1);
+        Thread waiting = Thread.ofVirtual().start(() -> {
+            try {
+                breaker.execute(() -> {
+                    waitingEntered.countDown();
+                    release.await();
+                    return "ok";
+                });
+            } catch (Exception ignored) {
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (waiting.getState() != Thread.State.WAITING && waiting.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(System.nanoTime() < deadline, "вызов не встал в очередь семафора: " + waiting.getState());
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        failNow.countDown();
+        failing.join();
+        assertTrue(waitingEntered.await(5, TimeUnit.SECONDS));
+        assertEquals(PanelCircuitBreaker.State.OPEN, breaker.state());
+        TimeUnit.MILLISECONDS.sleep(150);
+
+        // Пробный вызов не дождался места; следующий вызов снова становится пробным, а не получает отказ
+        assertThrows(PanelUnavailableException.class, () -> breaker.execute(() -> "ok"));
+        assertThrows(PanelUnavailableException.class, () -> breaker.execute(() -> "ok"));
+        assertEquals(2, rejected("bulkhead"));
+        assertEquals(0, rejected("open"));
+
+        release.countDown();
+        slow.join();
+        waiting.join();
+    }
+
+    // Запускает вызов, который держит место в семафоре до gate, затем завершается ошибкой error или успехом
+    private static Thread hang(PanelCircuitBreaker breaker, CountDownLatch gate, Exception error) throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        Thread thread = Thread.ofVirtual().start(() -> {
+            try {
+                breaker.execute(() -> {
+                    entered.countDown();
+                    gate.await();
+                    if (error != null) {
+                        throw error;
+                    }
+                    return "ok";
+                });
+            } catch (Exception ignored) {
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        return thread;
+    }
+
+    private PanelCircuitBreaker breaker() {
+        return new PanelCircuitBreaker("test-" + System.nanoTime(), circuit, meterRegistry);
+    }
+
+    private PanelCircuitBreaker opened() throws Exception {
+        PanelCircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            fail(breaker);
+        }
+        assertEquals(PanelCircuitBreaker.State.OPEN, breaker.state());
+        return breaker;
+    }
+
+    private static void fail(PanelCircuitBreaker breaker) {
+        assertThrows(IOException.class, () -> breaker.execute(() -> {
+            throw new IOException("panel down");
+        }));
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.find("xray.panel.circuit.rejected").tag("reason", reason).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+}
@@ -0,0 +1,90 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.PanelTransport.PanelResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PanelSessionTest {
+
+    private final XrayProperties.Panel panel = new XrayProperties.Panel();
+    private final FakeTransport transport = new FakeTransport();
+    private final PanelSession session;
+
+    PanelSessionTest() {
+        panel.setName("test");
+        panel.setBaseUrl("http://panel");
+        panel.setUsername("admin");
+        panel.setPassword("secret");
+        session = new PanelSession(transport, panel, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void reusesCookieWithoutProbing() throws Exception {
+        String cookie = session.cookie();
+
+        assertEquals(cookie, session.cookie());
+        assertEquals(1, transport.logins.get());
+    }
+
+    @Test
+    void invalidateOfOlderCookieKeepsNewerSession() throws Exception {
+        String first = session.cookie();
+        session.invalidate(first);
+        String second = session.cookie();
+        assertNotEquals(first, second);
+
+        // Запрос со старой cookie отклонён уже после повторного входа
+        session.invalidate(first);
+
+        assertEquals(second, session.cookie());
+        assertEquals(2, transport.logins.get());
+    }
+
+    @Test
+    void logsInAgainBeforeCookieExpires() throws Exception {
+        // Срок меньше запаса в минуту — cookie обновляется при каждом обращении
+        transport.maxAge = 30;
+
+        session.cookie();
+        session.cookie();
+
+        assertEquals(2, transport.logins.get());
+    }
+
+    @Test
+    void failedLoginIsRetriedByNextCaller() throws Exception {
+        transport.status = 500;
+        assertThrows(Exception.class, session::cookie);
+
+        transport.status = 200;
+        session.cookie();
+        assertEquals(2, transport.logins.get());
+    }
+
+    private static class FakeTransport implements PanelTransport {
+
+        final AtomicInteger logins = new AtomicInteger();
+        volatile int status = 200;
+        volatile long maxAge = 3600;
+
+        @Override
+        public PanelResponse get(String url, String cookie) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PanelResponse postForm(String url, String form) {
+            int n = logins.incrementAndGet();
+            return new PanelResponse(status, "{\"success\":true}",
+                    List.of("3x-ui=session" + n + "; Path=/; Max-Age=" + maxAge));
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.XrayApiService.Client;
+import com.xraybot.sim.PanelSimulator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PanelSimulatorTest {
+
+    private final XrayProperties properties = new XrayProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void readsAllClientsAcrossInbounds() throws Exception {
+        PanelSimulator panel = simulator().generateClients(250, 1);
+        XrayApiService api = api(panel.panel("a"));
+
+        assertEquals(250, api.getAllClients().size());
+        assertEquals("user7", api.getClientTraffic("user7").email());
+        assertEquals(1, panel.requestCount("login"));
+    }
+
+    @Test
+    void encodesEmailInTrafficRequest() throws Exception {
+        String email = "иван петров #2?vip@mail";
+        PanelSimulator panel = simulator().clients(List.of(new Client(email, 0, 3, 4, true)));
+        XrayApiService api = api(panel.panel("a"));
+
+        Client client = api.getClientTraffic(email);
+        assertEquals(email, client.email());
+        assertEquals(3, client.up());
+    }
+
+    @Test
+    void concurrentCallersShareOneLogin() throws Exception {
+        PanelSimulator panel = simulator().latency(Duration.ofMillis(20));
+        XrayProperties.Panel config = panel.panel("a");
+        HttpClientPanelTransport transport = new HttpClientPanelTransport(properties.getHttp());
+        resources.add(transport);
+        PanelSession session = new PanelSession(transport, config, meterRegistry);
+
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            callers.add(Thread.ofVirtual().start(() -> {
+                try {
+                    session.cookie();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            if (i % 8 == 7) {
+                // Часть вызовов приходит уже после завершения первого входа
+                Thread.sleep(10);
+            }
+        }
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        assertEquals(1, panel.requestCount("login"));
+    }
+
+    @Test
+    void logsInAgainWhenPanelDropsSession() throws Exception {
+        PanelSimulator panel = simulator().generateClients(10, 1);
+        XrayApiService api = api(panel.panel("a"));
+
+        api.getAllClients();
+        panel.expireSessions();
+        assertEquals(10, api.getAllClients().size());
+        assertEquals(2, panel.requestCount("login"));
+    }
+
+    @Test
+    void opensCircuitWhenPanelKeepsFailing() throws Exception {
+        PanelSimulator panel = simulator().generateClients(10, 1).errorRate(1.0);
+        XrayApiService api = api(panel.panel("a"));
+
+        for (int i = 0; i < properties.getCircuit().getMinimumCalls(); i++) {
+            assertThrows(Exception.class, api::getAllClients);
+        }
+        int served = panel.requestCount("list");
+        assertThrows(PanelUnavailableException.class, api::getAllClients);
+        assertEquals(served, panel.requestCount("list"));
+    }
+
+    @Test
+    void mergesClientsOfSeveralPanels() throws Exception {
+        PanelSimulator de = simulator().clients(List.of(
+                new Client("alice", 1_000, 10, 20, true),
+                new Client("bob", 0, 1, 1, true)));
+        PanelSimulator nl = simulator().clients(List.of(
+                new Client("Alice", 2_000, 5, 5, true)));
+        properties.setPanels(List.of(de.panel("de"), nl.panel("nl")));
+
+        PanelFederation federation = new PanelFederation(properties, meterRegistry);
+        resources.add(federation::shutdown);
+        federation.pollAll();
+        PanelFederation.View view = federation.view();
+
+        assertEquals(2, view.clients().size());
+        Client alice = view.clients().get("alice");
+        assertEquals(2_000, alice.expiryTime());
+        assertEquals(15, alice.up());
+        assertEquals(25, alice.down());
+    }
+
+    @Test
+    void countsTrafficResetPerPanel() throws Exception {
+        PanelSimulator de = simulator().clients(List.of(new Client("alice", 0, 500, 70, true)));
+        PanelSimulator nl = simulator().clients(List.of(new Client("alice", 0, 300, 30, true)));
+        properties.setPanels(List.of(de.panel("de"), nl.panel("nl")));
+
+        PanelFederation federation = new PanelFederation(properties, meterRegistry);
+        resources.add(federation::shutdown);
+        federation.pollAll();
+        assertEquals(new PanelFederation.Traffic(800, 100), federation.view().traffic().get("alice"));
+
+        de.clients(List.of(new Client("alice", 0, 10, 90, true)));
+        federation.pollAll();
+
+        PanelFederation.View view = federation.view();
+        assertEquals(310, view.clients().get("alice").up());
+        assertEquals(new PanelFederation.Traffic(810, 120), view.traffic().get("alice"));
+    }
+
+    @Test
+    void keepsLastDataOfUnavailablePanel() throws Exception {
+        PanelSimulator de = simulator().generateClients(5, 1);
+        PanelSimulator nl = simulator().clients(List.of(new Client("zoe", 0, 0, 0, true)));
+        properties.setPanels(List.of(de.panel("de"), nl.panel("nl")));
+
+        PanelFederation federation = new PanelFederation(properties, meterRegistry);
+        resources.add(federation::shutdown);
+        federation.pollAll();
+        nl.errorRate(1.0);
+
+        federation.pollAll();
+        PanelFederation.View view = federation.view();
+        assertEquals(6, view.clients().size());
+        assertTrue(view.clients().containsKey("zoe"));
+    }
+
+    @Test
+    void refreshesStaleSnapshotInBackground() throws Exception {
+        PanelSimulator panel = simulator().clients(List.of(new Client("alice", 0, 1, 1, true)));
+        properties.setPanels(List.of(panel.panel("de")));
+        properties.getCache().setTtl(Duration.ofMillis(50));
+
+        PanelFederation federation = new PanelFederation(properties, meterRegistry);
+        resources.add(federation::shutdown);
+        ClientSnapshotCache cache = new ClientSnapshotCache(federation, properties, new ClientDiffEngine(event -> {
+        }));
+        resources.add(cache::shutdown);
+        assertEquals(1, cache.current().find("alice").up());
+
+        panel.clients(List.of(new Client("alice", 0, 5, 1, true)));
+        Thread.sleep(100);
+        // Устаревший снимок отдаётся сразу, свежий приходит из фонового обновления
+        assertEquals(1, cache.current().find("alice").up());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.current().find("alice").up() != 5) {
+            assertTrue(System.nanoTime() < deadline, "снимок не обновился за 5 с");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    @Test
+    void refreshesOnlyStalePanelsAndBacksOffFromOpenCircuit() throws Exception {
+        PanelSimulator de = simulator().clients(List.of(new Client("alice", 0, 1, 1, true)));
+        PanelSimulator nl = simulator().clients(List.of(new Client("zoe", 0, 0, 0, true)));
+        properties.setPanels(List.of(de.panel("de"), nl.panel("nl")));
+        properties.getCache().setTtl(Duration.ofMillis(50));
+        properties.getCircuit().setMinimumCalls(2);
+        properties.getCircuit().setSlidingWindowSize(2);
+
+        PanelFederation federation = new PanelFederation(properties, meterRegistry);
+        resources.add(federation::shutdown);
+        ClientSnapshotCache cache = new ClientSnapshotCache(federation, properties, new ClientDiffEngine(event -> {
+        }));
+        resources.add(cache::shutdown);
+        cache.current();
+
+        // Предохранитель nl размыкается, следующий опрос по запросу отложен
+        nl.errorRate(1.0);
+        federation.pollAll();
+        federation.pollAll();
+        double rejected = rejected("nl");
+
+        de.clients(List.of(new Client("alice", 0, 5, 1, true)));
+        Thread.sleep(100);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.current().find("alice").up() != 5) {
+            assertTrue(System.nanoTime() < deadline, "снимок не обновился за 5 с");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        for (int i = 0; i < 20; i++) {
+            cache.current();
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        assertEquals(rejected, rejected("nl"));
+        assertTrue(cache.current().clients().containsKey("zoe"));
+    }
+
+    private double rejected(String panel) {
+        return meterRegistry.find("xray.panel.circuit.rejected").tag("panel", panel).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private PanelSimulator simulator() throws Exception {
+        PanelSimulator simulator = new PanelSimulator("admin", "secret", 3);
+        resources.add(simulator);
+        return simulator;
+    }
+
+    private XrayApiService api(XrayProperties.Panel panel) {
+        HttpClientPanelTransport transport = new HttpClientPanelTransport(properties.getHttp());
+        XrayApiService api = new XrayApiService(panel, transport,
+                new PanelSession(transport, panel, meterRegistry),
+                new PanelCircuitBreaker(panel.getName(), properties.getCircuit(), meterRegistry),
+                meterRegistry);
+        resources.add(api);
+        return api;
+    }
+}
@@ -0,0 +1,129 @@
+package com.xraybot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TrafficStoreTest {
+
+    private static final long START = 1_700_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private TrafficStore store;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (store != null) {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    void accumulatesDeltasSmallerThanKilobyte() throws Exception {
+        store = open();
+        store.record("alice", 0, 0, START);
+        for (int i = 1; i <= 10; i++) {
+            store.record("alice", i * 500L, i * 100L, START + i);
+        }
+
+        TrafficStore.Usage usage = store.usage("alice", Instant.ofEpochSecond(START + 10), 60);
+        // 5000 байт — четыре полных килобайта, остаток ждёт следующего замера
+        assertEquals(4 * 1024, usage.hourUp());
+        assertEquals(0, usage.hourDown());
+
+        store.record("alice", 5000 + 1000, 1024, START + 11);
+        usage = store.usage("alice", Instant.ofEpochSecond(START + 11), 60);
+        assertEquals(5 * 1024, usage.hourUp());
+        assertEquals(1024, usage.hourDown());
+    }
+
+    @Test
+    void countsWholeValueAfterCounterReset() throws Exception {
+        store = open();
+        store.record("alice", 0, 0, START);
+        store.record("alice", 10 * 1024, 0, START + 1);
+        // Счётчик панели сбросили — прирост равен новому значению
+        store.record("alice", 3 * 1024 + 100, 0, START + 2);
+        store.record("alice", 4 * 1024, 0, START + 3);
+
+        TrafficStore.Usage usage = store.usage("alice", Instant.ofEpochSecond(START + 3), 60);
+        assertEquals(14 * 1024, usage.hourUp());
+    }
+
+    @Test
+    void detectsResetOfEachCounterSeparately() throws Exception {
+        store = open();
+        store.record("alice", 0, 0, START);
+        store.record("alice", 10 * 1024, 10 * 1024, START + 1);
+        // Сброшен только up; down продолжает расти от прежнего значения
+        store.record("alice", 3 * 1024, 12 * 1024, START + 2);
+
+        TrafficStore.Usage usage = store.usage("alice", Instant.ofEpochSecond(START + 2), 60);
+        assertEquals(13 * 1024, usage.hourUp());
+        assertEquals(12 * 1024, usage.hourDown());
+    }
+
+    @Test
+    void prefersDeltasCountedPerPanel() throws Exception {
+        store = open();
+        store.record("alice", 0, 0, START);
+        store.record("alice", 800 * 1024, 0, START + 1);
+        // Одна из двух панелей сбросила счётчик: сумма упала, но прирост посчитан по панелям
+        store.record("alice", 310 * 1024, 0, 10 * 1024, 0, START + 2);
+
+        TrafficStore.Usage usage = store.usage("alice", Instant.ofEpochSecond(START + 2), 60);
+        assertEquals(810 * 1024, usage.hourUp());
+    }
+
+    @Test
+    void releaseMovesLastRecordIntoFreedSlot() throws Exception {
+        store = open();
+        for (String email : new String[]{"alice", "bob", "carol"}) {
+            store.record(email, 0, 0, START);
+        }
+        store.record("carol", 7 * 1024, 0, START + 1);
+
+        store.release("alice");
+        assertEquals(2, store.clients());
+        assertNull(store.usage("alice", Instant.ofEpochSecond(START + 1), 60));
+        assertEquals(7 * 1024, store.usage("carol", Instant.ofEpochSecond(START + 1), 60).hourUp());
+
+        // Запись переехала и в файле: после перезапуска данные на месте
+        store.shutdown();
+        store = open();
+        assertEquals(2, store.clients());
+        assertEquals(7 * 1024, store.usage("carol", Instant.ofEpochSecond(START + 1), 60).hourUp());
+
+        // Освобождённое место занимает новый клиент
+        store.record("dave", 0, 0, START + 2);
+        assertEquals(3, store.clients());
+    }
+
+    @Test
+    void reclaimsOnlyIdleClientsMissingFromPanels() throws Exception {
+        store = open();
+        store.record("alice", 0, 0, START);
+        store.record("bob", 0, 0, START);
+        store.record("carol", 0, 0, START + 40L * 86400);
+
+        store.reclaimIdle(Set.of("bob"), START + 40L * 86400);
+
+        assertEquals(2, store.clients());
+        assertNull(store.usage("alice", Instant.ofEpochSecond(START), 60));
+    }
+
+    private TrafficStore open() throws Exception {
+        TrafficStore opened = new TrafficStore(dir.resolve("traffic.dat"));
+        opened.init();
+        return opened;
+    }
+}
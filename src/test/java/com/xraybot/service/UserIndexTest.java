@@ -0,0 +1,84 @@
+package com.xraybot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserIndexTest {
+
+    private final UserIndex index = new UserIndex();
+
+    @Test
+    void normalizesNames() {
+        assertTrue(index.put(" @Alice ", 1));
+        assertEquals(1, index.get("alice"));
+        assertEquals(1, index.get("@ALICE"));
+        assertFalse(index.put("", 2));
+    }
+
+    @Test
+    void unknownNameHasNoChat() {
+        index.put("alice", 1);
+
+        assertEquals(UserIndex.NO_CHAT, index.get("bob"));
+        assertEquals(UserIndex.NO_CHAT, index.get(null));
+        assertEquals(List.of(), index.usernamesOf(2));
+    }
+
+    @Test
+    void lowercasesNonAsciiNamesAndKeepsAnyChatId() {
+        assertTrue(index.put("@Иван", -1_001_234_567_890L));
+        assertTrue(index.put("zero", 0));
+
+        assertEquals(-1_001_234_567_890L, index.get("иван"));
+        assertEquals(0, index.get("ZERO"));
+        assertEquals(List.of("иван"), index.usernamesOf(-1_001_234_567_890L));
+    }
+
+    @Test
+    void movesNamesBetweenChatsAcrossGrowth() {
+        for (int i = 0; i < 300; i++) {
+            index.put("user" + i, i);
+        }
+        // Каждое имя переходит в соседний чат, обратный индекс растёт и перестраивается
+        for (int i = 0; i < 300; i++) {
+            index.put("user" + i, i + 1_000);
+        }
+
+        assertEquals(300, index.size());
+        assertEquals(List.of(), index.usernamesOf(7));
+        assertEquals(List.of("user7"), index.usernamesOf(1_007));
+        assertEquals(1_299, index.get("user299"));
+    }
+
+    @Test
+    void reportsChangeOnlyWhenChatDiffers() {
+        assertTrue(index.put("alice", 1));
+        assertFalse(index.put("Alice", 1));
+        assertTrue(index.put("alice", 2));
+
+        assertEquals(List.of(), index.usernamesOf(1));
+        assertEquals(List.of("alice"), index.usernamesOf(2));
+    }
+
+    @Test
+    void keepsAllNamesOfChatAcrossGrowth() {
+        for (int i = 0; i < 500; i++) {
+            index.put("user" + i, i % 7);
+        }
+        index.put("renamed", 3);
+
+        assertEquals(501, index.size());
+        assertEquals(72, index.usernamesOf(3).size());
+        assertArrayEquals(new long[]{5, UserIndex.NO_CHAT, 3}, index.lookupAll(List.of("user5", "nobody", "renamed")));
+        Map<String, Long> map = index.toMap();
+        assertEquals(501, map.size());
+        assertEquals(2L, map.get("user499"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.xraybot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class UserJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void replaysJournalOverSnapshot() throws Exception {
+        Files.writeString(snapshot(), "{\"alice\":1,\"bob\":2}");
+        Files.writeString(journal(), "bob\t20\ncarol\t3\n");
+
+        Map<String, Long> users = new UserJournal(snapshot(), journal(), mapper, Map::of).replay();
+
+        assertEquals(Map.of("alice", 1L, "bob", 20L, "carol", 3L), users);
+    }
+
+    @Test
+    void dropsTornLastLineAndAppendsAfterIt() throws Exception {
+        // Процесс упал посреди записи "carol\t345": обрезанное число разбиралось бы как другой chatId
+        Files.writeString(journal(), "alice\t1\ncarol\t34");
+
+        UserIndex index = new UserIndex();
+        UserJournal crashed = new UserJournal(snapshot(), journal(), mapper, index::toMap);
+        crashed.replay().forEach(index::put);
+        assertEquals(UserIndex.NO_CHAT, index.get("carol"));
+
+        crashed.start();
+        index.put("dave", 4);
+        crashed.append("dave", 4);
+        crashed.close();
+
+        assertFalse(Files.readString(snapshot()).contains("carol"));
+        assertEquals(Map.of("alice", 1L, "dave", 4L), new UserJournal(snapshot(), journal(), mapper, Map::of).replay());
+    }
+
+    @Test
+    void keepsAppendedEntriesWithoutCompaction() throws Exception {
+        UserIndex index = new UserIndex();
+        UserJournal writer = new UserJournal(snapshot(), journal(), mapper, index::toMap);
+        writer.replay();
+        writer.start();
+        writer.append("alice", 1);
+        writer.append("bob", 2);
+
+        // Ждём, пока фоновый поток допишет пачку, и «падаем» без close()
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (Files.readString(journal()).lines().count() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Files.writeString(journal(), "bo", StandardOpenOption.APPEND);
+
+        Map<String, Long> users = new UserJournal(snapshot(), journal(), mapper, Map::of).replay();
+        assertEquals(1L, users.get("alice"));
+        assertEquals(2L, users.get("bob"));
+        assertNull(users.get("bo"));
+        writer.close();
+    }
+
+    @Test
+    void closeWithoutNewEntriesLeavesSnapshotAlone() throws Exception {
+        Files.writeString(snapshot(), "{\"alice\":1}");
+        Files.setLastModifiedTime(snapshot(), FileTime.fromMillis(0));
+
+        UserIndex index = new UserIndex();
+        UserJournal journal = new UserJournal(snapshot(), journal(), mapper, index::toMap);
+        journal.replay().forEach(index::put);
+        journal.start();
+        journal.close();
+
+        assertEquals(0, Files.getLastModifiedTime(snapshot()).toMillis());
+    }
+
+    private Path snapshot() {
+        return dir.resolve("user_map.json");
+    }
+
+    private Path journal() {
+        return dir.resolve("user_map.journal");
+    }
+}
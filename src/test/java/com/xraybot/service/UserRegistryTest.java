@@ -0,0 +1,56 @@
+package com.xraybot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void registrationsSurviveRestart() throws Exception {
+        UserRegistry registry = open();
+        assertTrue(registry.registerUser("@Alice", 1));
+        registry.shutdown();
+
+        UserRegistry restarted = open();
+        assertNull(restarted.loadError());
+        assertEquals(1L, restarted.getChatId("alice"));
+        restarted.shutdown();
+    }
+
+    @Test
+    void refusesRegistrationsWhenSnapshotIsUnreadable() throws Exception {
+        Files.writeString(dir.resolve("user_map.json"), "{\"alice\":");
+
+        UserRegistry registry = open();
+
+        assertNotNull(registry.loadError());
+        assertFalse(registry.registerUser("bob", 2));
+        registry.shutdown();
+        // Снимок не перезаписан пустым состоянием — его ещё можно починить вручную
+        assertEquals("{\"alice\":", Files.readString(dir.resolve("user_map.json")));
+    }
+
+    private UserRegistry open() throws InterruptedException {
+        UserRegistry registry = new UserRegistry(dir.resolve("user_map.json"), dir.resolve("user_map.journal"));
+        registry.init();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!registry.isLoaded()) {
+            assertTrue(System.nanoTime() < deadline, "пользователи не загрузились за 5 с");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return registry;
+    }
+}
@@ -0,0 +1,80 @@
+package com.xraybot.service;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.sim.PanelSimulator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class XrayApiServiceMetricsTest {
+
+    private final XrayProperties properties = new XrayProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void timesPanelCallsByOperationAndOutcome() throws Exception {
+        PanelSimulator panel = simulator().generateClients(5, 1);
+        XrayApiService api = api(panel);
+
+        api.getAllClients();
+        api.getClientTraffic("user1");
+        panel.errorRate(1.0);
+        assertThrows(Exception.class, api::getAllClients);
+
+        assertEquals(1, requests("login", "success"));
+        assertEquals(1, requests("getAllClients", "success"));
+        assertEquals(1, requests("getClientTraffic", "success"));
+        assertEquals(1, requests("getAllClients", "error"));
+    }
+
+    @Test
+    void countsRejectedSessions() throws Exception {
+        PanelSimulator panel = simulator().generateClients(5, 1);
+        XrayApiService api = api(panel);
+        api.getAllClients();
+
+        panel.expireSessions();
+        api.getAllClients();
+
+        assertEquals(1, meterRegistry.counter("xray.panel.session.rejected", "panel", "de").count());
+        assertEquals(2, requests("login", "success"));
+        // Повторный вход — часть той же операции
+        assertEquals(2, requests("getAllClients", "success"));
+    }
+
+    private long requests(String operation, String outcome) {
+        return meterRegistry.timer("xray.panel.requests", "panel", "de", "operation", operation, "outcome", outcome)
+                .count();
+    }
+
+    private XrayApiService api(PanelSimulator simulator) {
+        XrayProperties.Panel panel = simulator.panel("de");
+        HttpClientPanelTransport transport = new HttpClientPanelTransport(properties.getHttp());
+        XrayApiService api = new XrayApiService(panel, transport,
+                new PanelSession(transport, panel, meterRegistry),
+                new PanelCircuitBreaker(panel.getName(), properties.getCircuit(), meterRegistry),
+                meterRegistry);
+        resources.add(api);
+        return api;
+    }
+
+    private PanelSimulator simulator() throws Exception {
+        PanelSimulator simulator = new PanelSimulator("admin", "secret", 1);
+        resources.add(simulator);
+        return simulator;
+    }
+}
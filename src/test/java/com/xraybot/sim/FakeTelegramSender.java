@@ -0,0 +1,102 @@
+package com.xraybot.sim;
+
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отправитель вместо Bot API: ничего не шлёт в сеть, а считает вызовы по
+ * чатам и запоминает момент получения каждого сообщения. Задержка ответа
+ * Telegram настраивается; отдельным чатам можно отвечать ошибкой Bot API.
+ */
+public class FakeTelegramSender extends DefaultAbsSender {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, AtomicInteger> perChat = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Sent> sent = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final Map<String, String> rejected = new ConcurrentHashMap<>();
+    private volatile Duration latency = Duration.ZERO;
+
+    public FakeTelegramSender() {
+        super(new DefaultBotOptions(), "fake-token");
+    }
+
+    public FakeTelegramSender latency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    // Сообщения в чат получают ответ с кодом errorCode, пока не вызван accept
+    public FakeTelegramSender reject(long chatId, int errorCode, String description) {
+        rejected.put(Long.toString(chatId),
+                "{\"ok\":false,\"error_code\":" + errorCode + ",\"description\":\"" + description + "\"}");
+        return this;
+    }
+
+    public FakeTelegramSender accept(long chatId) {
+        rejected.remove(Long.toString(chatId));
+        return this;
+    }
+
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method) throws TelegramApiException {
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TelegramApiException(e);
+            }
+        }
+        if (method instanceof SendMessage message) {
+            String error = rejected.get(message.getChatId());
+            if (error != null) {
+                throw new TelegramApiRequestException("Error sending message", apiResponse(error));
+            }
+            perChat.computeIfAbsent(message.getChatId(), key -> new AtomicInteger()).incrementAndGet();
+            sent.add(new Sent(Long.parseLong(message.getChatId()), message.getText(), System.nanoTime()));
+        }
+        total.incrementAndGet();
+        return null;
+    }
+
+    private static ApiResponse<?> apiResponse(String json) throws TelegramApiException {
+        try {
+            return MAPPER.readValue(json, ApiResponse.class);
+        } catch (IOException e) {
+            throw new TelegramApiException(e);
+        }
+    }
+
+    public int total() {
+        return total.get();
+    }
+
+    public int sentTo(long chatId) {
+        AtomicInteger count = perChat.get(Long.toString(chatId));
+        return count != null ? count.get() : 0;
+    }
+
+    public List<Sent> sent() {
+        return List.copyOf(sent);
+    }
+
+    public record Sent(long chatId, String text, long receivedAtNanos) {
+    }
+}
@@ -0,0 +1,265 @@
+package com.xraybot.sim;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.XrayApiService.Client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Заглушка панели 3X-UI на встроенном {@link HttpServer}: вход с cookie,
+ * {@code /panel/api/inbounds/list}, {@code /inbounds/get/{id}} и
+ * {@code getClientTraffics/{email}}. Число клиентов, задержка ответа и доля
+ * ошибок настраиваются; сессии можно сбросить, как при перезапуске панели.
+ */
+public class PanelSimulator implements AutoCloseable {
+
+    private static final String COOKIE_NAME = "3x-ui";
+    private static final String BASE_PATH = "/xui";
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final String username;
+    private final String password;
+    private final int inbounds;
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    private volatile List<Client> clients = List.of();
+    private volatile Duration latency = Duration.ZERO;
+    private volatile double errorRate;
+
+    public PanelSimulator(String username, String password, int inbounds) throws IOException {
+        this.username = username;
+        this.password = password;
+        this.inbounds = Math.max(1, inbounds);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext(BASE_PATH + "/login", this::login);
+        server.createContext(BASE_PATH + "/panel/api/inbounds/list", exchange -> authorized(exchange, "list", this::list));
+        server.createContext(BASE_PATH + "/panel/api/inbounds/get/", exchange -> authorized(exchange, "get", this::get));
+        server.createContext(BASE_PATH + "/panel/api/inbounds/getClientTraffics/", exchange -> authorized(exchange, "traffic", this::traffic));
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + BASE_PATH;
+    }
+
+    public XrayProperties.Panel panel(String name) {
+        XrayProperties.Panel panel = new XrayProperties.Panel();
+        panel.setName(name);
+        panel.setBaseUrl(baseUrl());
+        panel.setUsername(username);
+        panel.setPassword(password);
+        return panel;
+    }
+
+    public PanelSimulator clients(List<Client> clients) {
+        this.clients = List.copyOf(clients);
+        return this;
+    }
+
+    // count клиентов user0..userN: четверть бессрочных, остальные в пределах ±30 дней
+    public PanelSimulator generateClients(int count, long seed) {
+        Random random = new Random(seed);
+        long now = System.currentTimeMillis();
+        List<Client> generated = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long expiry = i % 4 == 0 ? 0 : now + (random.nextInt(60) - 30) * DAY_MILLIS;
+            generated.add(new Client("user" + i, expiry,
+                    random.nextLong(1L << 40), random.nextLong(1L << 40), i % 10 != 0));
+        }
+        return clients(generated);
+    }
+
+    public PanelSimulator latency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    // Доля запросов к API, на которые панель отвечает 500
+    public PanelSimulator errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    // Все выданные cookie перестают действовать
+    public void expireSessions() {
+        sessions.clear();
+    }
+
+    public int requestCount(String endpoint) {
+        AtomicInteger count = requests.get(endpoint);
+        return count != null ? count.get() : 0;
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        count("login");
+        pause();
+        String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, String> fields = new ConcurrentHashMap<>();
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                fields.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        if (!username.equals(fields.get("username")) || !password.equals(fields.get("password"))) {
+            respond(exchange, 200, "{\"success\":false,\"msg\":\"Неверные данные\"}");
+            return;
+        }
+        String token = UUID.randomUUID().toString();
+        sessions.add(token);
+        exchange.getResponseHeaders().add("Set-Cookie", COOKIE_NAME + "=" + token + "; Path=/; Max-Age=3600; HttpOnly");
+        respond(exchange, 200, "{\"success\":true,\"msg\":\"\"}");
+    }
+
+    private void authorized(HttpExchange exchange, String endpoint, Handler handler) throws IOException {
+        count(endpoint);
+        pause();
+        if (!hasSession(exchange)) {
+            // Настоящая панель отправляет на страницу входа
+            exchange.getResponseHeaders().add("Location", BASE_PATH + "/");
+            respond(exchange, 307, "");
+            return;
+        }
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            respond(exchange, 500, "internal error");
+            return;
+        }
+        handler.handle(exchange);
+    }
+
+    private void list(HttpExchange exchange) throws IOException {
+        List<Client> snapshot = clients;
+        ObjectNode root = envelope();
+        ArrayNode obj = root.putArray("obj");
+        int perInbound = Math.max(1, (snapshot.size() + inbounds - 1) / inbounds);
+        for (int inbound = 0; inbound < inbounds; inbound++) {
+            ObjectNode node = obj.addObject();
+            node.put("id", inbound + 1);
+            node.put("remark", "in" + inbound);
+            node.put("enable", true);
+            node.put("settings", "{\"clients\":[]}");
+            ArrayNode stats = node.putArray("clientStats");
+            int from = inbound * perInbound;
+            for (int i = from; i < Math.min(snapshot.size(), from + perInbound); i++) {
+                ObjectNode stat = clientNode(stats.addObject(), snapshot.get(i));
+                stat.put("id", i);
+                stat.put("inboundId", inbound + 1);
+            }
+        }
+        respond(exchange, 200, mapper.writeValueAsString(root));
+    }
+
+    private void get(HttpExchange exchange) throws IOException {
+        ObjectNode settings = mapper.createObjectNode();
+        ArrayNode array = settings.putArray("clients");
+        for (Client client : clients) {
+            clientNode(array.addObject(), client).put("id", UUID.nameUUIDFromBytes(client.email().getBytes()).toString());
+        }
+        ObjectNode root = envelope();
+        ObjectNode obj = root.putObject("obj");
+        obj.put("id", 1);
+        obj.put("protocol", "vless");
+        obj.put("settings", mapper.writeValueAsString(settings));
+        respond(exchange, 200, mapper.writeValueAsString(root));
+    }
+
+    private void traffic(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String email = path.substring(path.lastIndexOf('/') + 1);
+        ObjectNode root = envelope();
+        clients.stream()
+                .filter(client -> client.email().equals(email))
+                .findFirst()
+                .ifPresentOrElse(client -> clientNode(root.putObject("obj"), client), () -> root.putNull("obj"));
+        respond(exchange, 200, mapper.writeValueAsString(root));
+    }
+
+    private ObjectNode envelope() {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("success", true);
+        root.put("msg", "");
+        return root;
+    }
+
+    private static ObjectNode clientNode(ObjectNode node, Client client) {
+        node.put("email", client.email());
+        node.put("enable", client.enable());
+        node.put("expiryTime", client.expiryTime());
+        node.put("up", client.up());
+        node.put("down", client.down());
+        node.put("total", 0);
+        return node;
+    }
+
+    private boolean hasSession(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Cookie");
+        if (header == null) {
+            return false;
+        }
+        for (String part : header.split(";")) {
+            String cookie = part.strip();
+            if (cookie.startsWith(COOKIE_NAME + "=") && sessions.contains(cookie.substring(COOKIE_NAME.length() + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void count(String endpoint) {
+        requests.computeIfAbsent(endpoint, key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void pause() {
+        Duration delay = latency;
+        if (!delay.isZero()) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+}
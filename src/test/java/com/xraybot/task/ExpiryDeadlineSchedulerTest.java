@@ -0,0 +1,135 @@
+package com.xraybot.task;
+
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.ClientChange;
+import com.xraybot.service.ClientDelta;
+import com.xraybot.service.ClientSnapshotCache;
+import com.xraybot.service.XrayApiService.Client;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiryDeadlineSchedulerTest {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final XrayProperties properties = new XrayProperties();
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    // Каждый вызов notifyClients — список email
+    private final BlockingQueue<List<String>> fired = new LinkedBlockingQueue<>();
+    private final ClientSnapshotCache cache = new ClientSnapshotCache(null, properties, null) {
+        @Override
+        public Snapshot current() {
+            return new Snapshot(Map.copyOf(clients), Instant.now());
+        }
+    };
+    private final ExpiryDeadlineScheduler scheduler;
+
+    ExpiryDeadlineSchedulerTest() {
+        properties.getNotifications().setThresholds(List.of(3, 1));
+        NotificationScheduler notifications = new NotificationScheduler(null, null, null, null, null,
+                properties, new SimpleMeterRegistry()) {
+            @Override
+            public void notifyClients(Collection<Client> due) {
+                fired.add(due.stream().map(Client::email).toList());
+            }
+        };
+        scheduler = new ExpiryDeadlineScheduler(notifications, cache, properties);
+        scheduler.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        scheduler.shutdown();
+        cache.shutdown();
+    }
+
+    @Test
+    void firesAtThresholdCrossing() throws Exception {
+        // Порог 3 дня уже пройден — проверка сразу; порог 1 день — через 200 мс
+        long expiry = System.currentTimeMillis() + DAY_MILLIS + 200;
+        delta(true, new ClientChange.Added(client("alice", expiry)));
+
+        assertEquals(List.of("alice"), fired.poll(1, TimeUnit.SECONDS));
+        long started = System.nanoTime();
+        assertEquals(List.of("alice"), fired.poll(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, scheduler.pendingDeadlines());
+    }
+
+    @Test
+    void skipsDeadlineOfRenewedClient() throws Exception {
+        long expiry = System.currentTimeMillis() + 3 * DAY_MILLIS + 200;
+        delta(true, new ClientChange.Added(client("alice", expiry)));
+
+        long renewed = expiry + 30 * DAY_MILLIS;
+        delta(false, new ClientChange.ExpiryChanged("alice", expiry, renewed));
+
+        assertNull(fired.poll(500, TimeUnit.MILLISECONDS));
+        // Устаревшие записи выброшены при извлечении, остались только пороги нового срока
+        assertEquals(3, scheduler.pendingDeadlines());
+    }
+
+    @Test
+    void skipsRemovedAndUnlimitedClients() throws Exception {
+        long expiry = System.currentTimeMillis() + DAY_MILLIS + 200;
+        delta(true, new ClientChange.Added(client("alice", expiry)), new ClientChange.Added(client("bob", 0)));
+        assertEquals(List.of("alice"), fired.poll(1, TimeUnit.SECONDS));
+
+        delta(false, new ClientChange.Removed(client("alice", expiry)));
+
+        assertNull(fired.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void expiryChangedToUnlimitedStopsNotifications() throws Exception {
+        long expiry = System.currentTimeMillis() + DAY_MILLIS + 200;
+        delta(true, new ClientChange.Added(client("alice", expiry)));
+        assertEquals(List.of("alice"), fired.poll(1, TimeUnit.SECONDS));
+
+        delta(false, new ClientChange.ExpiryChanged("alice", expiry, 0));
+
+        assertNull(fired.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void batchesClientsDueTogether() throws Exception {
+        long expiry = System.currentTimeMillis() + DAY_MILLIS;
+        delta(true, new ClientChange.Added(client("alice", expiry)), new ClientChange.Added(client("bob", expiry)));
+
+        List<String> due = fired.poll(1, TimeUnit.SECONDS);
+        assertEquals(2, due.size());
+        assertTrue(due.containsAll(List.of("alice", "bob")));
+    }
+
+    private void delta(boolean initial, ClientChange... changes) {
+        for (ClientChange change : changes) {
+            switch (change) {
+                case ClientChange.Added added -> clients.put(added.email(), added.client());
+                case ClientChange.Removed removed -> clients.remove(removed.email());
+                case ClientChange.ExpiryChanged expiry ->
+                        clients.computeIfPresent(expiry.email(), (email, c) -> client(email, expiry.expiryTime()));
+                default -> {
+                }
+            }
+        }
+        scheduler.onClientDelta(new ClientDelta(Instant.now(), initial, List.of(changes)));
+    }
+
+    private static Client client(String email, long expiryTime) {
+        return new Client(email, expiryTime, 0, 0, true);
+    }
+}
@@ -0,0 +1,198 @@
+package com.xraybot.task;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xraybot.bot.OutboundDispatcher;
+import com.xraybot.config.XrayProperties;
+import com.xraybot.service.ClientSnapshotCache;
+import com.xraybot.service.NotificationLedger;
+import com.xraybot.service.XrayApiService.Client;
+import com.xraybot.sim.FakeTelegramSender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationOutboxTest {
+
+    private static final long CHAT = 42;
+    private static final long EXPIRY = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private final XrayProperties properties = new XrayProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<NotificationOutbox> outboxes = new ArrayList<>();
+    private final List<OutboundDispatcher> dispatchers = new ArrayList<>();
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final ClientSnapshotCache cache = new ClientSnapshotCache(null, properties, null) {
+        @Override
+        public Snapshot current() {
+            return new Snapshot(Map.copyOf(clients), Instant.now());
+        }
+    };
+
+    NotificationOutboxTest() {
+        properties.getTelegram().setPerChatInterval(Duration.ZERO);
+        properties.getTelegram().setMessagesPerSecond(1_000);
+        for (String email : List.of("alice", "bob")) {
+            clients.put(email, new Client(email, EXPIRY, 0, 0, true));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (NotificationOutbox outbox : outboxes) {
+            outbox.shutdown();
+        }
+        for (OutboundDispatcher dispatcher : dispatchers) {
+            dispatcher.shutdown();
+        }
+        cache.shutdown();
+    }
+
+    @Test
+    void ignoresNotificationWithKnownKey() throws Exception {
+        NotificationOutbox outbox = outbox(new FakeTelegramSender(), true);
+
+        assertEquals(1, outbox.enqueue(List.of(notification("alice", 3))));
+        assertEquals(0, outbox.enqueue(List.of(notification("alice", 3))));
+        assertEquals(1, outbox.enqueue(List.of(notification("alice", 1))));
+    }
+
+    @Test
+    void sendsPendingNotificationsAfterCrash() throws Exception {
+        // Диспетчер не запущен: уведомления записаны, но не отправлены
+        NotificationOutbox crashed = outbox(new FakeTelegramSender(), false);
+        crashed.enqueue(List.of(notification("alice", 3), notification("bob", 3)));
+        crashed.shutdown();
+        outboxes.remove(crashed);
+        // Процесс упал посреди записи строки
+        Files.writeString(journal(), "{\"entry\":{\"key\":\"carol", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        FakeTelegramSender telegram = new FakeTelegramSender();
+        NotificationOutbox restarted = outbox(telegram, true);
+
+        await(() -> restarted.count(NotificationOutbox.State.SENT) == 2);
+        assertEquals(2, telegram.sentTo(CHAT));
+        assertEquals(0, restarted.enqueue(List.of(notification("alice", 3))));
+    }
+
+    @Test
+    void reviveRequeuesNotificationsOfBlockedChat() throws Exception {
+        FakeTelegramSender telegram = new FakeTelegramSender().reject(CHAT, 403, "Forbidden: bot was blocked by the user");
+        NotificationOutbox outbox = outbox(telegram, true);
+
+        outbox.enqueue(List.of(notification("alice", 3)));
+        await(() -> outbox.count(NotificationOutbox.State.DEAD) == 1);
+        // Пока чат недоступен, новые уведомления сразу снимаются с отправки
+        outbox.enqueue(List.of(notification("alice", 1)));
+        assertEquals(2, outbox.count(NotificationOutbox.State.DEAD));
+
+        telegram.accept(CHAT);
+        outbox.revive(CHAT);
+        await(() -> outbox.count(NotificationOutbox.State.SENT) == 2);
+        assertEquals(2, telegram.sentTo(CHAT));
+    }
+
+    @Test
+    void revivedStateSurvivesRestart() throws Exception {
+        FakeTelegramSender telegram = new FakeTelegramSender().reject(CHAT, 403, "Forbidden: bot was blocked by the user");
+        NotificationOutbox outbox = outbox(telegram, true);
+        outbox.enqueue(List.of(notification("alice", 3)));
+        await(() -> outbox.count(NotificationOutbox.State.DEAD) == 1);
+        outbox.shutdown();
+        outboxes.remove(outbox);
+
+        NotificationOutbox restarted = outbox(new FakeTelegramSender(), false);
+        assertEquals(1, restarted.count(NotificationOutbox.State.DEAD));
+        restarted.revive(CHAT);
+        restarted.shutdown();
+        outboxes.remove(restarted);
+
+        FakeTelegramSender healthy = new FakeTelegramSender();
+        NotificationOutbox revived = outbox(healthy, true);
+        await(() -> revived.count(NotificationOutbox.State.SENT) == 1);
+        assertEquals(1, healthy.sentTo(CHAT));
+    }
+
+    @Test
+    void reviveRequeuesNotificationsThatExhaustedAttempts() throws Exception {
+        NotificationOutbox.Entry exhausted = new NotificationOutbox.Entry(notification("alice", 3).key(), "alice", EXPIRY, 3,
+                CHAT, "alice 3", NotificationOutbox.State.DEAD, 10, 0, System.currentTimeMillis());
+        Files.writeString(journal(), "{\"entry\":" + new ObjectMapper().writeValueAsString(exhausted) + "}\n");
+
+        FakeTelegramSender telegram = new FakeTelegramSender();
+        NotificationOutbox outbox = outbox(telegram, true);
+        assertEquals(1, outbox.count(NotificationOutbox.State.DEAD));
+
+        // Чат не отмечен недоступным, но /start всё равно возвращает исчерпавшие попытки
+        outbox.revive(CHAT);
+        await(() -> outbox.count(NotificationOutbox.State.SENT) == 1);
+        assertEquals(1, telegram.sentTo(CHAT));
+    }
+
+    @Test
+    void dropsNotificationOfRenewedClient() throws Exception {
+        NotificationOutbox crashed = outbox(new FakeTelegramSender(), false);
+        crashed.enqueue(List.of(notification("alice", 3), notification("bob", 3)));
+        crashed.shutdown();
+        outboxes.remove(crashed);
+        // Пока уведомления ждали отправки, alice продлили
+        clients.put("alice", new Client("alice", EXPIRY + TimeUnit.DAYS.toMillis(30), 0, 0, true));
+
+        FakeTelegramSender telegram = new FakeTelegramSender();
+        NotificationOutbox restarted = outbox(telegram, true);
+
+        await(() -> restarted.count(NotificationOutbox.State.SENT) == 1
+                && restarted.count(NotificationOutbox.State.STALE) == 1);
+        assertEquals(1, telegram.sentTo(CHAT));
+        assertEquals(1, meterRegistry.counter("xray.notifications.stale").count());
+    }
+
+    private NotificationOutbox outbox(FakeTelegramSender telegram, boolean startDispatcher) throws Exception {
+        OutboundDispatcher dispatcher = new OutboundDispatcher(telegram, properties, meterRegistry);
+        if (startDispatcher) {
+            dispatcher.start();
+        }
+        dispatchers.add(dispatcher);
+        properties.getStorage().setDir(dir.toString());
+        NotificationOutbox outbox = new NotificationOutbox(dispatcher, new NotificationLedger(properties), cache, meterRegistry,
+                journal());
+        outbox.init();
+        outboxes.add(outbox);
+        return outbox;
+    }
+
+    private Path journal() {
+        return dir.resolve("outbox.journal");
+    }
+
+    private static NotificationOutbox.Notification notification(String email, int threshold) {
+        return new NotificationOutbox.Notification(email, EXPIRY, threshold, CHAT, email + " " + threshold);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "условие не выполнилось за 5 с");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}